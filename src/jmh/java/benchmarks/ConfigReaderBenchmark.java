@@ -0,0 +1,46 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import utils.Config;
+import utils.ConfigReader;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of creating a ConfigReader view and of looking a key up, through the view and through the typed snapshot.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConfigReaderBenchmark {
+
+    private ConfigReader config;
+
+    @Setup
+    public void load() {
+        config = new ConfigReader(ConfigReader.DEFAULT_CONFIG_PATH);
+    }
+
+    @Benchmark
+    public ConfigReader construct() {
+        return new ConfigReader(ConfigReader.DEFAULT_CONFIG_PATH);
+    }
+
+    @Benchmark
+    public String lookup() {
+        return config.getProperty("baseUrl");
+    }
+
+    @Benchmark
+    public String lookupWithDefault() {
+        return config.getProperty("missing.key", "fallback");
+    }
+
+    @Benchmark
+    public long typedLookup() {
+        return Config.get().getLong("history.defaultEstimateMillis", 0);
+    }
+}
@@ -0,0 +1,89 @@
+package benchmarks;
+
+import driver.DriverFactory;
+import driver.DriverServices;
+import org.openjdk.jmh.annotations.*;
+import org.openqa.selenium.By;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+import org.openqa.selenium.chrome.ChromeOptions;
+import pages.HomePage;
+import pages.LoginPage;
+import pages.SearchPage;
+import utils.WaitHelper;
+
+import java.lang.reflect.Field;
+import java.net.URL;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Resolves each page object's {@link By} definitions against a static copy of the store in headless Chrome,
+ * plus one visibility wait, so a slow locator or wait shows up here before it slows every test.
+ * The locators are read from the page objects themselves, so the benchmark follows any change to them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LocatorBenchmark {
+
+    @Param({
+            "HomePage.accountText", "HomePage.logoutBtn",
+            "LoginPage.emailField", "LoginPage.passwordField", "LoginPage.loginBtn", "LoginPage.errorMsg",
+            "SearchPage.searchBox", "SearchPage.searchButton", "SearchPage.productTitles"
+    })
+    public String locator;
+
+    private WebDriver driver;
+    private By by;
+    private WaitHelper wait;
+
+    @Setup(Level.Trial)
+    public void openFixture() throws ReflectiveOperationException {
+        ChromeOptions options = new ChromeOptions();
+        options.addArguments("--headless=new", "--disable-gpu", "--no-sandbox", "--disable-dev-shm-usage");
+        driver = DriverFactory.initDriver("chrome", options);
+
+        URL fixture = LocatorBenchmark.class.getClassLoader().getResource("fixture/storefront.html");
+        if (fixture == null) {
+            throw new IllegalStateException("fixture/storefront.html not found on the benchmark classpath");
+        }
+        driver.get(fixture.toString());
+
+        by = pageLocator(locator);
+        wait = new WaitHelper(driver, 10);
+    }
+
+    @TearDown(Level.Trial)
+    public void closeBrowser() {
+        DriverFactory.quitDriver();
+        DriverServices.shutdownAll();
+    }
+
+    @Benchmark
+    public List<WebElement> findElements() {
+        return driver.findElements(by);
+    }
+
+    @Benchmark
+    public WebElement waitForVisible() {
+        return wait.waitForElementVisible(by);
+    }
+
+    // "Page.field" -> the By held in that private field of a page object built on the benchmark driver.
+    private By pageLocator(String name) throws ReflectiveOperationException {
+        String[] parts = name.split("\\.");
+        Object page = switch (parts[0]) {
+            case "HomePage" -> new HomePage(driver);
+            case "LoginPage" -> new LoginPage(driver);
+            case "SearchPage" -> new SearchPage(driver);
+            default -> throw new IllegalArgumentException("Unknown page: " + parts[0]);
+        };
+        Field field = page.getClass().getDeclaredField(parts[1]);
+        field.setAccessible(true);
+        return (By) field.get(page);
+    }
+}
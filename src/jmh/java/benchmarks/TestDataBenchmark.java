@@ -0,0 +1,89 @@
+package benchmarks;
+
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import utils.CompiledSheet;
+import utils.ExcelUtil;
+import utils.TestDataEngine;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Test data loading: the real testdata.xlsx through {@link ExcelUtil}, and a generated 50k-row
+ * workbook through the same compiled and streamed paths ExcelUtil uses internally.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TestDataBenchmark {
+
+    private static final int LARGE_ROWS = 50_000;
+    private static final String LARGE_SHEET = "Large";
+
+    private Path largeWorkbook;
+
+    @Setup(Level.Trial)
+    public void createLargeWorkbook() throws IOException {
+        // A fixed file name, so the compiled copy under target/ is reused between runs while the content is unchanged.
+        largeWorkbook = Files.createTempDirectory("benchmark").resolve("benchmark-testdata.xlsx");
+        try (SXSSFWorkbook workbook = new SXSSFWorkbook(1000);
+             OutputStream out = Files.newOutputStream(largeWorkbook)) {
+            Sheet sheet = workbook.createSheet(LARGE_SHEET);
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue("ProductName");
+            header.createCell(1).setCellValue("Price");
+            header.createCell(2).setCellValue("ExpectedResult");
+            for (int r = 1; r <= LARGE_ROWS; r++) {
+                Row row = sheet.createRow(r);
+                row.createCell(0).setCellValue("Product " + (r % 500));
+                row.createCell(1).setCellValue(r * 0.25);
+                row.createCell(2).setCellValue(r % 3 != 0);
+            }
+            workbook.write(out);
+            workbook.dispose();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void deleteLargeWorkbook() throws IOException {
+        Files.deleteIfExists(largeWorkbook);
+        Files.deleteIfExists(largeWorkbook.getParent());
+    }
+
+    @Benchmark
+    public Object[][] smallSheetData() {
+        return ExcelUtil.getSheetData("Products");
+    }
+
+    @Benchmark
+    public void smallSheetRows(Blackhole blackhole) {
+        drain(ExcelUtil.getSheetRows("Products"), blackhole);
+    }
+
+    @Benchmark
+    public Object[][] largeSheetCompiled() {
+        return CompiledSheet.forSheet(largeWorkbook, LARGE_SHEET).toArray();
+    }
+
+    @Benchmark
+    public void largeSheetStreamed(Blackhole blackhole) {
+        drain(TestDataEngine.textRows(largeWorkbook, LARGE_SHEET), blackhole);
+    }
+
+    private static void drain(Iterator<Object[]> rows, Blackhole blackhole) {
+        while (rows.hasNext()) {
+            blackhole.consume(rows.next());
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openqa.selenium.WebDriver;
+import utils.WaitHelper;
+
+import java.lang.reflect.Proxy;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * WaitHelper's own overhead when a condition already holds: evaluating it, timing the wait and
+ * recording the statistics. Uses a driver stub, so no browser is involved.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WaitHelperBenchmark {
+
+    private WaitHelper wait;
+
+    @Setup
+    public void createHelper() {
+        WebDriver stub = (WebDriver) Proxy.newProxyInstance(WebDriver.class.getClassLoader(),
+                new Class<?>[]{WebDriver.class}, (proxy, method, args) -> null);
+        wait = new WaitHelper(stub, 10);
+    }
+
+    @Benchmark
+    public Boolean conditionAlreadyTrue() {
+        return wait.waitUntil(d -> Boolean.TRUE);
+    }
+}
@@ -2,36 +2,66 @@
 package base;
 
 // Import necessary classes from different libraries.
+import driver.ChromeProfiles;
+import driver.CommandLatency;
 import driver.DriverFactory;
+import driver.LatencyHistogram;
+import driver.PerformanceProfile;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.PageLoadStrategy;
+import org.openqa.selenium.TimeoutException;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.chrome.ChromeOptions;
+import org.testng.IHookCallBack;
+import org.testng.IHookable;
+import org.testng.ITestResult;
 import org.testng.annotations.*;
 
+import driver.DriverPool;
+import driver.DriverServices;
+import listeners.ParallelismListener;
+import pages.HomePage;
+import pages.LoginPage;
+import utils.Config;
 import utils.ConfigReader;
+import utils.FailureArtifacts;
+import utils.PageTimings;
+import utils.SessionCache;
+import utils.StorefrontServer;
+import utils.TestLogBuffer;
+import utils.WaitHelper;
 import io.qameta.allure.testng.AllureTestNg;
 import io.qameta.allure.Allure;
 
 import java.io.ByteArrayInputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * This annotation tells TestNG to use the AllureTestNg listener with this test class.
  * AllureTestNg listens for test events (start, stop, pass, fail) and creates the data needed for Allure reports.
  */
 @Listeners({AllureTestNg.class})
-public class BaseTest {
-
-    // A protected variable to hold the WebDriver instance, accessible by child test classes.
-    protected WebDriver driver;
+public class BaseTest implements IHookable {
 
     // A protected variable for the configuration reader, accessible by child classes.
-    protected ConfigReader config;
+    // A view of the shared snapshot: creating it reads no file.
+    protected final ConfigReader config = new ConfigReader(ConfigReader.DEFAULT_CONFIG_PATH);
 
     // A static final logger instance for this class, used to log information and errors.
     protected static final Logger logger = LogManager.getLogger(BaseTest.class);
 
+    // Numbers test invocations, so every data-provider row gets its own log buffer id.
+    private static final AtomicLong testCounter = new AtomicLong();
+
+    // Warm browser sessions shared by all test classes; null when pooling is disabled in config.
+    private static DriverPool driverPool;
+
     /**
      * Set Allure results directory for Maven-compatible reporting.
      * This runs once before the suite starts.
@@ -40,6 +70,29 @@ public class BaseTest {
     public void beforeSuite() {
         System.setProperty("allure.results.directory", "target/allure-results");
         logger.info("Set Allure results directory to target/allure-results");
+
+        // Before any browser starts, so every session (and the URLs tests read from config) uses the local server
+        String storefrontUrl = StorefrontServer.startIfEnabled();
+        if (storefrontUrl != null) {
+            logger.info("Running against the local storefront at {}", storefrontUrl);
+        }
+
+        Config settings = Config.get();
+        if (settings.getBoolean("driverPool.enabled", true)) {
+            String browser = settings.getString("browser");
+            // Rows of parallel data providers need browsers while the other method threads keep theirs,
+            // but on a many-core machine that peak is more browsers than it can run side by side
+            int poolSize = settings.getInt("driverPool.size",
+                    Math.min(ParallelismListener.resolvePeakSessions(), settings.getInt("driverPool.sizeCap", 4)));
+            long timeoutMillis = settings.getLong("driverPool.borrowTimeoutSeconds", 300) * 1000;
+
+            driverPool = new DriverPool(() -> DriverFactory.createDriver(browser, chromeOptions()), poolSize, timeoutMillis);
+            if (settings.getBoolean("driverPool.warmUp", true)) {
+                // Only the sessions the method threads take at once; data-provider rows launch theirs on demand
+                driverPool.warmUp(Math.min(poolSize, ParallelismListener.resolveThreadCount()));
+            }
+            logger.info("Driver pool enabled with up to {} browser session(s)", poolSize);
+        }
     }
 
     /**
@@ -47,24 +100,134 @@ public class BaseTest {
      * It's responsible for setting up the test environment.
      */
     @BeforeMethod
-    public void setUp() {
+    public void setUp(ITestResult testResult) {
+        // Everything this thread logs from here on is buffered for this test (see TestLogBuffer)
+        TestLogBuffer.start(testResult.getTestClass().getRealClass().getSimpleName() + "."
+                + testResult.getMethod().getMethodName() + "#" + testCounter.incrementAndGet());
         logger.info("========== Test Setup Started ==========");
 
-        // Initialize ConfigReader to load config properties
-        config = new ConfigReader("src/test/resources/config.properties");
-
         // Read browser name from config
         String browser = config.getProperty("browser");
         logger.info("Loaded browser from config: {}", browser);
 
-        // Setup Chrome options
+        // Borrow a warm session from the pool, or launch a fresh one; either way it is bound to the current test thread
+        if (driverPool != null) {
+            DriverFactory.attachDriver(driverPool.borrow());
+            logger.info("WebDriver borrowed from pool for browser: {}", browser);
+        } else {
+            DriverFactory.initDriver(browser, chromeOptions());
+            logger.info("WebDriver initialized for browser: {}", browser);
+        }
+    }
+
+    /**
+     * Builds the ChromeOptions used for every session this suite launches.
+     * @return A new ChromeOptions instance.
+     */
+    private static ChromeOptions chromeOptions() {
         ChromeOptions options = new ChromeOptions();
         options.setExperimentalOption("excludeSwitches", new String[]{"enable-logging"});
         logger.debug("ChromeOptions configured to suppress extra logs.");
+        return options;
+    }
+
+    /**
+     * Returns the WebDriver owned by the thread running the current test.
+     * Test classes must use this instead of keeping their own field, because with parallel="methods"
+     * one test class instance is shared by several threads at once.
+     * @return The current thread's WebDriver instance.
+     */
+    protected WebDriver getDriver() {
+        return DriverFactory.getDriver();
+    }
 
-        // Initialize WebDriver via DriverFactory
-        driver = DriverFactory.initDriver(browser, options);
-        logger.info("WebDriver initialized for browser: {}", browser);
+    /**
+     * Leaves the current session logged in as the given user, on the account page.
+     * The login form is only used the first time a user is needed (or after its cached session
+     * expires or is rejected); other tests get the cached cookies and storage restored instead.
+     * Tests that exercise the login form itself should call {@link LoginPage#login} directly.
+     * With pageLoadStrategy=none (the "minimal" profile) the restored account page may still be loading when
+     * it is checked, so the check waits up to {@code sessionCache.checkTimeout} for it instead.
+     * @return true if the session is authenticated.
+     */
+    protected boolean loginAs(String username, String password) {
+        String loginUrl = config.getProperty("loginUrl");
+        String accountUrl = config.getProperty("accountUrl");
+        Duration checkTimeout = PerformanceProfile.active().getPageLoadStrategy() == PageLoadStrategy.NONE
+                ? Config.get().getDuration("sessionCache.checkTimeout", Duration.ofSeconds(3))
+                : Duration.ZERO;
+        return SessionCache.authenticate(getDriver(), username + "@" + loginUrl, accountUrl,
+                d -> checkTimeout.isZero() ? new HomePage(d).isLoggedIn() : new HomePage(d).isLoggedIn(checkTimeout),
+                d -> {
+                    d.get(loginUrl);
+                    new LoginPage(d).login(username, password);
+                    try {
+                        return new HomePage(d).isMyAccountVisible();
+                    } catch (TimeoutException e) {
+                        return false;
+                    }
+                });
+    }
+
+    /**
+     * Wraps every @Test method body. When command latency metrics are enabled, the commands the test
+     * issues are collected separately and their p50/p95/p99 are attached to the test's Allure result.
+     * Setup and teardown commands only count towards the suite-wide figures. A failed test also gets
+     * its screenshot, page source and browser console attached (see {@link FailureArtifacts}).
+     */
+    @Override
+    public void run(IHookCallBack callBack, ITestResult testResult) {
+        nameAfterParameters(testResult);
+        boolean measureLatency = CommandLatency.isEnabled();
+        if (measureLatency) {
+            CommandLatency.startTest();
+        }
+        try {
+            callBack.runTestMethod(testResult);
+        } finally {
+            if (measureLatency) {
+                Map<String, LatencyHistogram> latencies = CommandLatency.endTest();
+                if (!latencies.isEmpty()) {
+                    Allure.addAttachment("Command latency", "text/plain", CommandLatency.format(latencies), ".txt");
+                }
+            }
+            if (testResult.getThrowable() != null) {
+                FailureArtifacts.capture(DriverFactory.getDriver());
+            }
+            attachTestLog(testResult);
+        }
+    }
+
+    /**
+     * Attaches the buffered log of the test (setup and test body, DEBUG included) to its Allure result.
+     * Only a failed test's log is also written to disk.
+     */
+    private static void attachTestLog(ITestResult testResult) {
+        String testId = TestLogBuffer.currentTestId();
+        if (testId == null) {
+            return;
+        }
+        String log = TestLogBuffer.finish(testId, testResult.getThrowable() != null);
+        if (!log.isEmpty()) {
+            Allure.addAttachment("Test log", "text/plain", log, ".log");
+        }
+    }
+
+    /**
+     * Gives each data-provider row its own readable Allure result name, e.g. "Search [iPhone, true]",
+     * so rows that ran in parallel are told apart at a glance.
+     */
+    private static void nameAfterParameters(ITestResult testResult) {
+        Object[] params = testResult.getParameters();
+        if (params == null || params.length == 0) {
+            return;
+        }
+        String suffix = " " + Arrays.toString(params);
+        Allure.getLifecycle().updateTestCase(result -> {
+            if (result.getName() != null && !result.getName().endsWith(suffix)) {
+                result.setName(result.getName() + suffix);
+            }
+        });
     }
 
     /**
@@ -74,8 +237,19 @@ public class BaseTest {
     @AfterMethod
     public void tearDown() {
         logger.info("========== Test Teardown Started ==========");
-        DriverFactory.quitDriver();
-        logger.info("WebDriver closed successfully.");
+        if (driverPool != null) {
+            driverPool.release(DriverFactory.detachDriver());
+            logger.info("WebDriver returned to pool.");
+        } else {
+            DriverFactory.quitDriver();
+            logger.info("WebDriver closed successfully.");
+        }
+
+        // Normally already finished in run(); this covers tests whose setup failed before the body ran
+        String testId = TestLogBuffer.currentTestId();
+        if (testId != null) {
+            TestLogBuffer.finish(testId, false);
+        }
     }
 
     /**
@@ -91,6 +265,47 @@ public class BaseTest {
                 + "Environment: " + config.getProperty("env") + "\n"
                 + "Browser: " + config.getProperty("browser");
 
+        if (driverPool != null) {
+            logger.info(driverPool.getStats());
+            summary += "\n" + driverPool.getStats();
+            driverPool.shutdown();
+        }
+
+        logger.info(ChromeProfiles.getStats());
+        summary += "\n" + ChromeProfiles.getStats();
+
+        logger.info(PerformanceProfile.getStats());
+        summary += "\n" + PerformanceProfile.getStats();
+
+        logger.info(SessionCache.getStats());
+        summary += "\n" + SessionCache.getStats();
+
+        String waits = "Waits: " + WaitHelper.getTotalWaits() + " totalling " + WaitHelper.getTotalBlockedMillis() + " ms blocked";
+        logger.info(waits);
+        summary += "\n" + waits;
+
+        if (CommandLatency.isEnabled()) {
+            String latencies = CommandLatency.format(CommandLatency.suite());
+            logger.info("Command latency for the suite:\n{}", latencies);
+            summary += "\n" + latencies;
+            CommandLatency.writeSuiteSummary(Paths.get("target", "command-latency.json"));
+        }
+
+        PageTimings.writeTrend();
+        logger.info(PageTimings.getStats());
+        summary += "\n" + PageTimings.getStats();
+
+        FailureArtifacts.flush();
+        logger.info(FailureArtifacts.getStats());
+        summary += "\n" + FailureArtifacts.getStats();
+
+        // Pooled sessions are gone now, so the shared chromedriver/geckodriver processes can stop too
+        DriverServices.shutdownAll();
+
+        logger.info(StorefrontServer.getStats());
+        summary += "\n" + StorefrontServer.getStats();
+        StorefrontServer.stop();
+
         Allure.addAttachment("Test Suite Summary",
                 new ByteArrayInputStream(summary.getBytes(StandardCharsets.UTF_8)));
     }
@@ -0,0 +1,393 @@
+package driver;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.Capabilities;
+import org.openqa.selenium.HasCapabilities;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.chrome.ChromeOptions;
+import utils.Config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Gives every Chrome session its own user-data directory, cloned from a pre-built template.
+ * <p>
+ * The template is created once per machine (and rebuilt when older than {@code chromeProfile.templateMaxAgeHours}
+ * or when Chrome was upgraded) by starting Chrome on it once through {@link DriverFactory}, so first-run setup
+ * is already done and the HTTP cache holds the store's static assets. The cookies and web storage that visit
+ * left behind are deleted again, so every clone starts logged out and with empty storage. Each session gets a copy-on-write clone
+ * ({@code cp --reflink=auto}) where the filesystem supports it, and a plain copy elsewhere. Hard links are
+ * not used, because Chrome rewrites its databases in place and would corrupt the template through them.
+ * <p>
+ * Clones live under {@code <tmp>/selenium-pom-ddt-profiles}, are deleted when their session quits and on
+ * JVM shutdown, and clones left behind by crashed runs are swept on startup.
+ * <p>
+ * Off unless {@code chromeProfile.template} is true; left blank, on only inside CI, where every run starts cold.
+ */
+public final class ChromeProfiles {
+
+    private static final Logger logger = LogManager.getLogger(ChromeProfiles.class);
+
+    private static final boolean ENABLED =
+            Config.get().getBoolean("chromeProfile.template", "true".equalsIgnoreCase(System.getenv("CI")));
+    private static final Duration MAX_TEMPLATE_AGE =
+            Duration.ofHours(Config.get().getLong("chromeProfile.templateMaxAgeHours", 24));
+
+    private static final Path TEMPLATE_DIR = Paths.get(Config.get().getString("chromeProfile.templateDir",
+            Paths.get(System.getProperty("user.home"), ".cache", "selenium-pom-ddt", "chrome-profile-template").toString()));
+    private static final Path CLONE_ROOT = Paths.get(System.getProperty("java.io.tmpdir"), "selenium-pom-ddt-profiles");
+    private static final String CLONE_PREFIX = "chrome-profile-" + ProcessHandle.current().pid() + "-";
+    private static final String MARKER = ".template.properties";
+
+    // Lock files of a running Chrome; never copied into a clone.
+    private static final Set<String> SKIPPED = Set.of("SingletonLock", "SingletonSocket", "SingletonCookie", "lockfile", MARKER);
+
+    // Site state the priming visit leaves in the Default profile; relative to it, Cookies* also matches the journals.
+    private static final List<String> SITE_STATE = List.of("Cookies", "Network/Cookies", "Local Storage", "Session Storage");
+
+    // Session -> its cloned profile directory.
+    private static final Map<WebDriver, Path> clones = new ConcurrentHashMap<>();
+
+    private static final AtomicLong created = new AtomicLong();
+    private static final AtomicLong deleted = new AtomicLong();
+    private static final AtomicLong bytesDeleted = new AtomicLong();
+    private static final AtomicLong peakLive = new AtomicLong();
+
+    private static volatile boolean templateReady;
+    private static volatile boolean reflinkUnsupported;
+
+    static {
+        sweepStaleClones();
+    }
+
+    private ChromeProfiles() {
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Clones the template into a fresh directory for one session, building the template first if needed.
+     * @return The new user-data directory.
+     */
+    public static Path newProfile() {
+        ensureTemplate();
+        try {
+            Files.createDirectories(CLONE_ROOT);
+            Path clone = Files.createTempDirectory(CLONE_ROOT, CLONE_PREFIX);
+            if (Files.isDirectory(TEMPLATE_DIR)) {
+                copy(TEMPLATE_DIR, clone);
+            }
+            created.incrementAndGet();
+            peakLive.accumulateAndGet(clones.size() + 1L, Math::max);
+            return clone;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create a Chrome profile under " + CLONE_ROOT, e);
+        }
+    }
+
+    /**
+     * Ties a cloned profile to its session, so {@link #release(WebDriver)} can delete it once the session quits.
+     * A session running a different Chrome version than the template was built with marks the template stale.
+     */
+    static void register(WebDriver session, Path profile) {
+        clones.put(session, profile);
+        if (session instanceof HasCapabilities) {
+            Capabilities caps = ((HasCapabilities) session).getCapabilities();
+            String version = caps.getBrowserVersion();
+            String templateVersion = readMarker().getProperty("browserVersion");
+            if (version != null && templateVersion != null && !version.equals(templateVersion)) {
+                logger.info("Chrome {} differs from the template's {}; the template will be rebuilt", version, templateVersion);
+                templateReady = false;
+                deleteQuietly(TEMPLATE_DIR.resolve(MARKER));
+            }
+        }
+    }
+
+    /**
+     * Deletes the profile of a session that has quit. Sessions without a cloned profile are ignored.
+     */
+    static void release(WebDriver session) {
+        Path profile = clones.remove(session);
+        if (profile != null) {
+            long bytes = deleteQuietly(profile);
+            deleted.incrementAndGet();
+            bytesDeleted.addAndGet(bytes);
+            logger.debug("Deleted Chrome profile {} ({} KB)", profile, bytes / 1024);
+        }
+    }
+
+    /**
+     * Deletes a profile that never got a session, e.g. because the browser failed to start.
+     */
+    static void discard(Path profile) {
+        deleteQuietly(profile);
+        deleted.incrementAndGet();
+    }
+
+    /**
+     * Deletes every profile still in use. Called from the JVM shutdown hook after all sessions were quit.
+     */
+    static void releaseAll() {
+        for (WebDriver session : clones.keySet()) {
+            release(session);
+        }
+    }
+
+    /**
+     * @return A one-line summary of clones created, deleted and still on disk, and their disk usage.
+     */
+    public static String getStats() {
+        long liveBytes = clones.values().stream().mapToLong(ChromeProfiles::size).sum();
+        return String.format("Chrome profiles: %d cloned, %d deleted (%d MB), %d live (%d MB), peak %d live, template %d MB",
+                created.get(), deleted.get(), bytesDeleted.get() >> 20, clones.size(), liveBytes >> 20,
+                peakLive.get(), size(TEMPLATE_DIR) >> 20);
+    }
+
+    private static void ensureTemplate() {
+        if (templateReady) {
+            return;
+        }
+        synchronized (ChromeProfiles.class) {
+            if (templateReady) {
+                return;
+            }
+            Properties marker = readMarker();
+            String builtAt = marker.getProperty("builtAt");
+            if (builtAt == null || Instant.parse(builtAt).plus(MAX_TEMPLATE_AGE).isBefore(Instant.now())) {
+                buildTemplate();
+            }
+            templateReady = true;
+        }
+    }
+
+    // Builds next to the final location and swaps it in, so another JVM never clones a half-built template.
+    private static void buildTemplate() {
+        long start = System.nanoTime();
+        Path staging = null;
+        try {
+            Files.createDirectories(TEMPLATE_DIR.getParent());
+            staging = Files.createTempDirectory(TEMPLATE_DIR.getParent(), "template-");
+            DriverBinaries.ensureResolved("chrome");
+
+            // The same launch path as the suite's sessions; the explicit user-data-dir keeps it from cloning a profile
+            ChromeOptions options = DriverFactory.chromeOptions();
+            options.addArguments("--no-first-run", "--no-default-browser-check", "--user-data-dir=" + staging);
+            WebDriver chrome = DriverFactory.createDriver("chrome", options);
+            String version = null;
+            try {
+                if (chrome instanceof HasCapabilities) {
+                    version = ((HasCapabilities) chrome).getCapabilities().getBrowserVersion();
+                }
+                String warmUrl = Config.get().getString("chromeProfile.warmUrl", Config.get().getString("baseUrl"));
+                if (warmUrl != null && !warmUrl.isBlank()) {
+                    chrome.get(warmUrl); // primes the HTTP cache with the site's static assets
+                }
+            } finally {
+                DriverFactory.quit(chrome);
+            }
+            clearSiteState(staging.resolve("Default"));
+
+            Properties marker = new Properties();
+            marker.setProperty("builtAt", Instant.now().toString());
+            marker.setProperty("browserVersion", version == null ? "" : version);
+            try (OutputStream out = Files.newOutputStream(staging.resolve(MARKER))) {
+                marker.store(out, "Chrome profile template");
+            }
+
+            Path old = TEMPLATE_DIR.resolveSibling(TEMPLATE_DIR.getFileName() + ".old-" + ProcessHandle.current().pid());
+            if (Files.exists(TEMPLATE_DIR)) {
+                Files.move(TEMPLATE_DIR, old, StandardCopyOption.ATOMIC_MOVE);
+            }
+            Files.move(staging, TEMPLATE_DIR, StandardCopyOption.ATOMIC_MOVE);
+            deleteQuietly(old);
+            logger.info("Built Chrome {} profile template at {} ({} MB) in {} ms", version, TEMPLATE_DIR,
+                    size(TEMPLATE_DIR) >> 20, (System.nanoTime() - start) / 1_000_000);
+        } catch (Exception e) {
+            // Sessions still get a private directory, just an empty one.
+            logger.warn("Could not build the Chrome profile template, sessions start from empty profiles: {}", e.getMessage());
+            if (staging != null) {
+                deleteQuietly(staging);
+            }
+        }
+    }
+
+    // Keeps the cache but drops cookies and web storage, so clones never share a session with the priming visit.
+    private static void clearSiteState(Path defaultProfile) throws IOException {
+        for (String relative : SITE_STATE) {
+            Path path = defaultProfile.resolve(relative);
+            Path dir = path.getParent();
+            if (path.getFileName().toString().equals("Cookies") && Files.isDirectory(dir)) {
+                try (Stream<Path> files = Files.list(dir)) {
+                    files.filter(f -> f.getFileName().toString().startsWith("Cookies")).forEach(ChromeProfiles::deleteQuietly);
+                }
+            } else {
+                deleteQuietly(path);
+            }
+        }
+    }
+
+    private static Properties readMarker() {
+        Properties marker = new Properties();
+        Path file = TEMPLATE_DIR.resolve(MARKER);
+        if (Files.isRegularFile(file)) {
+            try (InputStream in = Files.newInputStream(file)) {
+                marker.load(in);
+            } catch (IOException e) {
+                logger.warn("Ignoring unreadable profile template marker: {}", e.getMessage());
+            }
+        }
+        return marker;
+    }
+
+    private static void copy(Path source, Path target) throws IOException {
+        if (!reflinkUnsupported && !System.getProperty("os.name").toLowerCase().startsWith("windows")) {
+            try {
+                // "source/." copies the contents; reflink=auto falls back to a regular copy on filesystems without CoW.
+                Process cp = new ProcessBuilder("cp", "-R", "--reflink=auto", source + "/.", target.toString())
+                        .redirectErrorStream(true).start();
+                if (cp.waitFor(60, TimeUnit.SECONDS) && cp.exitValue() == 0) {
+                    for (String skipped : SKIPPED) {
+                        Files.deleteIfExists(target.resolve(skipped));
+                    }
+                    return;
+                }
+                cp.destroyForcibly();
+                logger.debug("cp --reflink unavailable, copying profiles in Java from now on");
+            } catch (IOException e) {
+                logger.debug("cp not available, copying profiles in Java from now on: {}", e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while cloning the profile template", e);
+            }
+            reflinkUnsupported = true;
+            deleteContents(target);
+        }
+        Files.walkFileTree(source, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                Files.createDirectories(target.resolve(source.relativize(dir).toString()));
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                if (!SKIPPED.contains(file.getFileName().toString())) {
+                    Files.copy(file, target.resolve(source.relativize(file).toString()), StandardCopyOption.COPY_ATTRIBUTES);
+                }
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException e) {
+                return FileVisitResult.CONTINUE; // a cache entry vanishing mid-copy is harmless
+            }
+        });
+    }
+
+    // Removes clones whose owning JVM is gone (crashed or killed runs never reached the shutdown hook).
+    private static void sweepStaleClones() {
+        if (!Files.isDirectory(CLONE_ROOT)) {
+            return;
+        }
+        try (Stream<Path> dirs = Files.list(CLONE_ROOT)) {
+            dirs.filter(dir -> isOrphan(dir.getFileName().toString())).forEach(dir -> {
+                long bytes = deleteQuietly(dir);
+                logger.info("Removed stale Chrome profile {} ({} KB)", dir, bytes / 1024);
+            });
+        } catch (IOException e) {
+            logger.warn("Could not sweep stale Chrome profiles: {}", e.getMessage());
+        }
+    }
+
+    private static boolean isOrphan(String name) {
+        String[] parts = name.split("-");
+        if (parts.length < 4 || !name.startsWith("chrome-profile-")) {
+            return false;
+        }
+        try {
+            return ProcessHandle.of(Long.parseLong(parts[2])).isEmpty();
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static long size(Path dir) {
+        if (!Files.isDirectory(dir)) {
+            return 0;
+        }
+        try (Stream<Path> files = Files.walk(dir)) {
+            return files.filter(Files::isRegularFile).mapToLong(file -> {
+                try {
+                    return Files.size(file);
+                } catch (IOException e) {
+                    return 0;
+                }
+            }).sum();
+        } catch (IOException | UncheckedIOException e) {
+            return 0;
+        }
+    }
+
+    private static void deleteContents(Path dir) throws IOException {
+        try (Stream<Path> children = Files.list(dir)) {
+            for (Path child : (Iterable<Path>) children::iterator) {
+                deleteQuietly(child);
+            }
+        }
+    }
+
+    // Deletes a file or directory tree, best effort. Returns the number of bytes removed.
+    private static long deleteQuietly(Path path) {
+        if (!Files.exists(path)) {
+            return 0;
+        }
+        AtomicLong bytes = new AtomicLong();
+        try {
+            Files.walkFileTree(path, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    bytes.addAndGet(attrs.size());
+                    Files.deleteIfExists(file);
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+                    Files.deleteIfExists(dir);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            logger.warn("Could not fully delete {}: {}", path, e.getMessage());
+        }
+        return bytes.get();
+    }
+}
@@ -0,0 +1,150 @@
+package driver;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.json.Json;
+import org.openqa.selenium.support.events.WebDriverListener;
+import utils.Config;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Records how long every WebDriver command takes (get, findElement, click, sendKeys, getText,
+ * executeScript, ...), keyed by command name, into {@link LatencyHistogram}s kept per suite and per test.
+ * <p>
+ * {@link DriverFactory} wraps sessions with this listener only when {@code metrics.commandLatency} is
+ * enabled (off by default, e.g. {@code -Dmetrics.commandLatency=true}); otherwise drivers are not
+ * decorated at all and nothing is recorded.
+ * Commands are attributed to the test running on the thread that issues them.
+ */
+public final class CommandLatency implements WebDriverListener {
+
+    private static final Logger logger = LogManager.getLogger(CommandLatency.class);
+
+    private static final boolean ENABLED = Config.get().getBoolean("metrics.commandLatency", false);
+
+    static final CommandLatency LISTENER = new CommandLatency();
+
+    private static final Map<String, LatencyHistogram> suite = new ConcurrentHashMap<>();
+
+    // Histograms of the test running on this thread; null between tests.
+    private static final ThreadLocal<Map<String, LatencyHistogram>> currentTest = new ThreadLocal<>();
+
+    // Start times of the commands in flight on this thread. A stack, because a command may trigger another.
+    private static final ThreadLocal<long[]> startTimes = ThreadLocal.withInitial(() -> new long[16]);
+    private static final ThreadLocal<int[]> depth = ThreadLocal.withInitial(() -> new int[1]);
+
+    private CommandLatency() {
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    @Override
+    public void beforeAnyCall(Object target, Method method, Object[] args) {
+        int[] d = depth.get();
+        long[] starts = startTimes.get();
+        if (d[0] < starts.length) {
+            starts[d[0]] = System.nanoTime();
+        }
+        d[0]++;
+    }
+
+    @Override
+    public void afterAnyCall(Object target, Method method, Object[] args, Object result) {
+        int[] d = depth.get();
+        if (d[0] == 0) {
+            return;
+        }
+        d[0]--;
+        if (d[0] < startTimes.get().length) {
+            record(method.getName(), (System.nanoTime() - startTimes.get()[d[0]]) / 1_000);
+        }
+    }
+
+    // A command that throws never reaches afterAnyCall, but its time still counts.
+    @Override
+    public void onError(Object target, Method method, Object[] args, InvocationTargetException e) {
+        afterAnyCall(target, method, args, null);
+    }
+
+    private static void record(String command, long micros) {
+        suite.computeIfAbsent(command, c -> new LatencyHistogram()).record(micros);
+        Map<String, LatencyHistogram> test = currentTest.get();
+        if (test != null) {
+            test.computeIfAbsent(command, c -> new LatencyHistogram()).record(micros);
+        }
+    }
+
+    /**
+     * Starts collecting a fresh set of histograms for the test about to run on this thread.
+     */
+    public static void startTest() {
+        currentTest.set(new TreeMap<>());
+    }
+
+    /**
+     * Stops collecting for the test on this thread.
+     * @return The test's histograms by command name; empty if nothing was recorded.
+     */
+    public static Map<String, LatencyHistogram> endTest() {
+        Map<String, LatencyHistogram> test = currentTest.get();
+        currentTest.remove();
+        return test == null ? Collections.emptyMap() : test;
+    }
+
+    /**
+     * @return The suite-wide histograms by command name, sorted.
+     */
+    public static Map<String, LatencyHistogram> suite() {
+        return new TreeMap<>(suite);
+    }
+
+    /**
+     * Formats histograms as a fixed-width table with count, mean, p50, p95, p99 and max in milliseconds.
+     */
+    public static String format(Map<String, LatencyHistogram> histograms) {
+        StringBuilder table = new StringBuilder(String.format("%-24s %7s %9s %9s %9s %9s %9s%n",
+                "command", "count", "mean ms", "p50 ms", "p95 ms", "p99 ms", "max ms"));
+        histograms.forEach((command, h) -> table.append(String.format("%-24s %7d %9.2f %9.2f %9.2f %9.2f %9.2f%n",
+                command, h.getCount(), h.getMeanMicros() / 1000.0, h.percentileMicros(50) / 1000.0,
+                h.percentileMicros(95) / 1000.0, h.percentileMicros(99) / 1000.0, h.getMaxMicros() / 1000.0)));
+        return table.toString();
+    }
+
+    /**
+     * Writes the suite-wide histograms as JSON: one object per command with count, mean, p50, p95, p99 and max in microseconds.
+     * @param file Target file; parent directories are created.
+     */
+    public static void writeSuiteSummary(Path file) {
+        Map<String, Object> commands = new LinkedHashMap<>();
+        suite().forEach((command, h) -> {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("count", h.getCount());
+            stats.put("meanMicros", Math.round(h.getMeanMicros()));
+            stats.put("p50Micros", h.percentileMicros(50));
+            stats.put("p95Micros", h.percentileMicros(95));
+            stats.put("p99Micros", h.percentileMicros(99));
+            stats.put("maxMicros", h.getMaxMicros());
+            commands.put(command, stats);
+        });
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+            Files.writeString(file, new Json().toJson(Map.of("commands", commands)), StandardCharsets.UTF_8);
+            logger.info("Wrote command latency summary for {} command(s) to {}", commands.size(), file);
+        } catch (IOException e) {
+            logger.error("Failed to write command latency summary: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,157 @@
+package driver;
+
+import io.github.bonigarcia.wdm.WebDriverManager;
+import io.github.bonigarcia.wdm.managers.ChromeDriverManager;
+import io.github.bonigarcia.wdm.managers.FirefoxDriverManager;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import utils.Config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves the chromedriver/geckodriver binary once per JVM instead of once per session.
+ * <p>
+ * Resolved paths are also persisted in a small properties file keyed by browser and browser version,
+ * so later runs on the same machine skip WebDriverManager entirely. With {@code driver.offline=true}
+ * the network is never touched: the cache is used if it matches, otherwise the configured
+ * {@code chromeDriverPath}/{@code geckoDriverPath}.
+ */
+public final class DriverBinaries {
+
+    private static final Logger logger = LogManager.getLogger(DriverBinaries.class);
+
+    private static final Path DEFAULT_CACHE_FILE =
+            Paths.get(System.getProperty("user.home"), ".cache", "selenium-pom-ddt", "driver-binaries.properties");
+
+    // Browser name -> resolved driver binary path, filled at most once per browser per JVM.
+    private static final Map<String, String> resolved = new ConcurrentHashMap<>();
+
+    private DriverBinaries() {
+    }
+
+    /**
+     * Makes sure the driver binary for the given browser is resolved and exported as the
+     * matching {@code webdriver.*.driver} system property. Only the first call per browser does any work.
+     * @param browser "chrome" or "firefox".
+     * @return The path of the driver binary.
+     */
+    public static String ensureResolved(String browser) {
+        return resolved.computeIfAbsent(browser.toLowerCase(), DriverBinaries::resolve);
+    }
+
+    private static String resolve(String browser) {
+        Config config = Config.get();
+        boolean offline = config.getBoolean("driver.offline", false);
+        Path cacheFile = Paths.get(config.getString("driver.cacheFile", DEFAULT_CACHE_FILE.toString()));
+
+        Optional<String> browserVersion = detectBrowserVersion(browser);
+        String cacheKey = browser + "." + browserVersion.orElse("unknown");
+
+        String path = readCache(cacheFile).getProperty(cacheKey);
+        if (path != null && Files.isExecutable(Paths.get(path))) {
+            logger.info("Using cached {} driver for browser version {}: {}", browser, browserVersion.orElse("unknown"), path);
+        } else if (offline) {
+            path = config.getString(configuredPathKey(browser));
+            if (path == null || path.isBlank() || !Files.exists(Paths.get(path))) {
+                throw new IllegalStateException("Offline mode: no cached driver for " + cacheKey
+                        + " and '" + configuredPathKey(browser) + "' does not point to an existing file: " + path);
+            }
+            logger.info("Offline mode: using configured {} driver at {}", browser, path);
+        } else {
+            WebDriverManager manager = manager(browser);
+            browserVersion.ifPresent(manager::browserVersion);
+            manager.setup();
+            path = manager.getDownloadedDriverPath();
+            logger.info("WebDriverManager resolved {} driver: {}", browser, path);
+            if (browserVersion.isPresent() && path != null) {
+                writeCache(cacheFile, cacheKey, path);
+            }
+        }
+
+        System.setProperty(driverProperty(browser), path);
+        return path;
+    }
+
+    private static WebDriverManager manager(String browser) {
+        switch (browser) {
+            case "chrome":
+                return WebDriverManager.chromedriver();
+            case "firefox":
+                return WebDriverManager.firefoxdriver();
+            default:
+                throw new IllegalArgumentException("Browser not supported: " + browser);
+        }
+    }
+
+    private static String driverProperty(String browser) {
+        return "firefox".equals(browser) ? "webdriver.gecko.driver" : "webdriver.chrome.driver";
+    }
+
+    private static String configuredPathKey(String browser) {
+        return "firefox".equals(browser) ? "geckoDriverPath" : "chromeDriverPath";
+    }
+
+    /**
+     * Reads the installed browser version from the local shell (registry, --version, ...); no network access.
+     */
+    private static Optional<String> detectBrowserVersion(String browser) {
+        try {
+            return "firefox".equals(browser) ? new FirefoxVersionProbe().version() : new ChromeVersionProbe().version();
+        } catch (Exception e) {
+            logger.warn("Could not detect {} version: {}", browser, e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    private static Properties readCache(Path cacheFile) {
+        Properties cache = new Properties();
+        if (Files.exists(cacheFile)) {
+            try (InputStream in = Files.newInputStream(cacheFile)) {
+                cache.load(in);
+            } catch (IOException e) {
+                logger.warn("Ignoring unreadable driver cache {}: {}", cacheFile, e.getMessage());
+            }
+        }
+        return cache;
+    }
+
+    private static synchronized void writeCache(Path cacheFile, String key, String path) {
+        Properties cache = readCache(cacheFile);
+        cache.setProperty(key, path);
+        try {
+            Files.createDirectories(cacheFile.getParent());
+            // Write to a temp file and move it into place so concurrent JVMs never read a half-written cache.
+            Path tmp = Files.createTempFile(cacheFile.getParent(), "driver-binaries", ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                cache.store(out, "Resolved WebDriver binaries, keyed by browser.version");
+            }
+            Files.move(tmp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Could not update driver cache {}: {}", cacheFile, e.getMessage());
+        }
+    }
+
+    // WebDriverManager only exposes its shell-based browser version detection to subclasses.
+    private static final class ChromeVersionProbe extends ChromeDriverManager {
+        Optional<String> version() {
+            return getBrowserVersionFromTheShell();
+        }
+    }
+
+    private static final class FirefoxVersionProbe extends FirefoxDriverManager {
+        Optional<String> version() {
+            return getBrowserVersionFromTheShell();
+        }
+    }
+}
@@ -6,23 +6,45 @@ import org.apache.logging.log4j.LogManager; // For logging using Log4j2.
 import org.apache.logging.log4j.Logger; // The Logger interface for Log4j2.
 import org.openqa.selenium.WebDriver; // The main interface for browser automation.
 import org.openqa.selenium.chrome.ChromeDriver; // Class to create a new Chrome browser session.
+import org.openqa.selenium.chrome.ChromeDriverService; // A chromedriver server process shared by many sessions.
 import org.openqa.selenium.chrome.ChromeOptions; // To configure Chrome browser options.
 import org.openqa.selenium.firefox.FirefoxDriver; // Class to create a new Firefox browser session.
-import io.github.bonigarcia.wdm.WebDriverManager; // A library that automatically manages WebDriver binaries.
+import org.openqa.selenium.firefox.FirefoxOptions; // To configure Firefox browser options.
+import org.openqa.selenium.firefox.GeckoDriverService; // A geckodriver server process reused by consecutive sessions.
+import org.openqa.selenium.logging.LogType; // Names the browser console log.
+import org.openqa.selenium.logging.LoggingPreferences; // Which logs the browser keeps for later retrieval.
+import org.openqa.selenium.support.events.EventFiringDecorator; // Wraps a session so a listener sees every command.
+import utils.Config; // Typed access to config.properties and its overrides.
+import utils.FailureArtifacts; // Failure capture needs the browser console kept.
 
-import java.nio.file.Files; // For creating temporary directories
 import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
 
 public class DriverFactory {
 
-    // A private static variable to hold the single WebDriver instance (singleton pattern).
-    private static WebDriver driver;
+    // Each test thread owns its own WebDriver, so parallel test methods never share or quit each other's session.
+    private static final ThreadLocal<WebDriver> currentDriver = new ThreadLocal<>();
+
+    // Every live session, so anything a test forgets to quit is still closed when the JVM exits.
+    private static final Set<WebDriver> activeDrivers = ConcurrentHashMap.newKeySet();
 
     // A static final logger instance for this class, used to log information and errors.
     private static final Logger logger = LogManager.getLogger(DriverFactory.class);
 
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            quitAll();
+            ChromeProfiles.releaseAll();
+            DriverServices.shutdownAll();
+        }, "driver-factory-shutdown"));
+    }
+
     /**
-     * Initializes the WebDriver for a given browser name.
+     * Initializes the WebDriver for a given browser name and binds it to the calling thread.
      * This method is 'static', so it can be called directly on the class (e.g., DriverFactory.initDriver("chrome")).
      * @param browser The name of the browser to initialize (e.g., "chrome", "firefox").
      * @return The initialized WebDriver instance.
@@ -30,53 +52,35 @@ public class DriverFactory {
     public static WebDriver initDriver(String browser) {
         logger.info("Initializing driver for browser: {}", browser);
 
-        if (browser.equalsIgnoreCase("chrome")) {
-            WebDriverManager.chromedriver().setup();
-
-            // Always use ChromeOptions (even for local runs).
-            ChromeOptions options = new ChromeOptions();
-
-            // Detect if running inside GitHub Actions (CI environment).
-            boolean isCI = "true".equalsIgnoreCase(System.getenv("CI"));
-
-            if (isCI) {
-                logger.info("Running in GitHub Actions (headless mode). Applying CI-specific Chrome options.");
-                options.addArguments("--headless=new");                // Headless mode
-                options.addArguments("--disable-gpu");                 // Disable GPU (not available in CI)
-                options.addArguments("--window-size=1920,1080");       // Ensure full HD resolution
-                options.addArguments("--no-sandbox");                  // Required in CI to run Chrome
-                options.addArguments("--disable-dev-shm-usage");       // Prevents memory issues in containers
-                options.addArguments("--remote-allow-origins=*");      // Required for Chrome 111+
-
-                try {
-                    // ✅ Create a unique temporary Chrome profile directory
-                    Path tempDir = Files.createTempDirectory("chrome-profile");
-                    options.addArguments("--user-data-dir=" + tempDir.toString());
-                    logger.info("Using temporary Chrome profile at: {}", tempDir.toString());
-                } catch (Exception e) {
-                    logger.error("Failed to create temp Chrome profile directory: {}", e.getMessage());
-                }
-
-            } else {
-                logger.info("Running locally. Using default Chrome options.");
-            }
+        // Always use ChromeOptions (even for local runs).
+        ChromeOptions options = browser.equalsIgnoreCase("chrome") ? chromeOptions() : new ChromeOptions();
+        return initDriver(browser, options);
+    }
 
-            driver = new ChromeDriver(options);
-            logger.info("ChromeDriver initialized successfully.");
+    /**
+     * Builds the Chrome options every suite session starts from, honouring {@code browser.headless}.
+     * Also used by {@link ChromeProfiles} so the profile template is built by the same kind of browser.
+     * @return Fresh options the caller may add to.
+     */
+    static ChromeOptions chromeOptions() {
+        ChromeOptions options = new ChromeOptions();
+        // Headless when browser.headless says so; left blank, only inside CI (e.g. GitHub Actions).
+        boolean headless = Config.get().getBoolean("browser.headless", "true".equalsIgnoreCase(System.getenv("CI")));
 
-        } else if (browser.equalsIgnoreCase("firefox")) {
-            WebDriverManager.firefoxdriver().setup();
-            driver = new FirefoxDriver();
-            logger.info("FirefoxDriver initialized successfully.");
+        if (headless) {
+            logger.info("Running headless. Applying CI-specific Chrome options.");
+            options.addArguments("--headless=new");                // Headless mode
+            options.addArguments("--disable-gpu");                 // Disable GPU (not available in CI)
+            options.addArguments("--window-size=1920,1080");       // Ensure full HD resolution
+            options.addArguments("--no-sandbox");                  // Required in CI to run Chrome
+            options.addArguments("--disable-dev-shm-usage");       // Prevents memory issues in containers
+            options.addArguments("--remote-allow-origins=*");      // Required for Chrome 111+
+            // Each session gets its own clone of the template profile, see ChromeProfiles
 
         } else {
-            logger.error("Browser not supported: {}", browser);
-            throw new IllegalArgumentException("Browser not supported: " + browser);
+            logger.info("Running locally. Using default Chrome options.");
         }
-
-        driver.manage().window().maximize();
-        logger.info("Browser window maximized.");
-        return driver;
+        return options;
     }
 
     /**
@@ -87,20 +91,87 @@ public class DriverFactory {
      * @return The initialized WebDriver instance.
      */
     public static WebDriver initDriver(String browser, ChromeOptions options) {
+        return bind(createDriver(browser, options));
+    }
+
+    /**
+     * Launches a new browser session without binding it to the calling thread.
+     * Used by {@link DriverPool} to pre-launch sessions that are handed to test threads later.
+     * @param browser The name of the browser (should be "chrome").
+     * @param options The ChromeOptions object with custom settings.
+     * @return The new WebDriver instance.
+     */
+    public static WebDriver createDriver(String browser, ChromeOptions options) {
         logger.info("Initializing driver with options for browser: {}", browser);
+        WebDriver driver;
+        PerformanceProfile profile = PerformanceProfile.active();
+        Path userDataDir = null;
 
         if (browser.equalsIgnoreCase("chrome")) {
-            WebDriverManager.chromedriver().setup();
-            driver = new ChromeDriver(options);
+            DriverBinaries.ensureResolved("chrome");
+            profile.apply(options);
+            if (FailureArtifacts.isEnabled()) {
+                // Lets a failed test's browser console be read back (utils.FailureArtifacts)
+                LoggingPreferences logging = new LoggingPreferences();
+                logging.enable(LogType.BROWSER, Level.ALL);
+                options.setCapability("goog:loggingPrefs", logging);
+            }
+            if (ChromeProfiles.isEnabled() && !hasUserDataDir(options)) {
+                userDataDir = ChromeProfiles.newProfile();
+                options.addArguments("--user-data-dir=" + userDataDir);
+                logger.info("Using cloned Chrome profile at: {}", userDataDir);
+            }
+            try {
+                if (DriverServices.isEnabled()) {
+                    ChromeDriverService service = DriverServices.chrome();
+                    try {
+                        driver = new ChromeDriver(service, options);
+                    } catch (RuntimeException e) {
+                        service.stop(); // hands the lease back; the shared process keeps running
+                        throw e;
+                    }
+                } else {
+                    driver = new ChromeDriver(options);
+                }
+            } catch (RuntimeException e) {
+                if (userDataDir != null) {
+                    ChromeProfiles.discard(userDataDir);
+                }
+                throw e;
+            }
             logger.info("ChromeDriver (with options) initialized successfully.");
         } else if (browser.equalsIgnoreCase("firefox")) {
-            WebDriverManager.firefoxdriver().setup();
-            driver = new FirefoxDriver();
+            DriverBinaries.ensureResolved("firefox");
+            FirefoxOptions firefoxOptions = new FirefoxOptions();
+            profile.apply(firefoxOptions);
+            if (DriverServices.isEnabled()) {
+                GeckoDriverService service = DriverServices.gecko();
+                try {
+                    driver = new FirefoxDriver(service, firefoxOptions);
+                } catch (RuntimeException e) {
+                    service.stop();
+                    throw e;
+                }
+            } else {
+                driver = new FirefoxDriver(firefoxOptions);
+            }
             logger.info("FirefoxDriver initialized successfully.");
         } else {
             logger.error("Browser not supported: {}", browser);
             throw new IllegalArgumentException("Browser not supported: " + browser);
         }
+        // Resource blocking is set up on the raw session, before any decoration
+        profile.attach(driver);
+
+        // Only decorate when latency metrics are on, so a disabled run pays nothing per command
+        if (CommandLatency.isEnabled()) {
+            driver = new EventFiringDecorator<>(CommandLatency.LISTENER).decorate(driver);
+            logger.debug("Recording per-command latency for this session.");
+        }
+        activeDrivers.add(driver);
+        if (userDataDir != null) {
+            ChromeProfiles.register(driver, userDataDir);
+        }
 
         driver.manage().window().maximize();
         logger.info("Browser window maximized.");
@@ -108,24 +179,110 @@ public class DriverFactory {
     }
 
     /**
-     * A "getter" method to provide access to the currently active WebDriver instance.
-     * @return The current WebDriver instance.
+     * Makes the given session the current driver of the calling thread.
+     * If the thread still owned another session, that one is quit first so it cannot leak.
+     * @param newDriver The session to bind.
+     * @return The same session, for chaining.
+     */
+    private static WebDriver bind(WebDriver newDriver) {
+        WebDriver previous = currentDriver.get();
+        if (previous != null && previous != newDriver) {
+            logger.warn("Thread {} already owned a driver; quitting it before binding a new one.",
+                    Thread.currentThread().getName());
+            quit(previous);
+        }
+        currentDriver.set(newDriver);
+        activeDrivers.add(newDriver);
+        return newDriver;
+    }
+
+    /**
+     * Binds an already running session (e.g. one borrowed from a {@link DriverPool}) to the calling thread.
+     * @param session The session the current test should use.
+     */
+    public static void attachDriver(WebDriver session) {
+        bind(session);
+    }
+
+    /**
+     * Unbinds the calling thread's session without quitting it, so it can be returned to a pool.
+     * @return The session that was bound, or null if the thread had none.
+     */
+    public static WebDriver detachDriver() {
+        WebDriver current = currentDriver.get();
+        currentDriver.remove();
+        return current;
+    }
+
+    /**
+     * A "getter" method to provide access to the WebDriver owned by the calling thread.
+     * @return The current thread's WebDriver instance, or null if none was initialized.
      */
     public static WebDriver getDriver() {
-        return driver;
+        return currentDriver.get();
     }
 
     /**
-     * Closes the browser and terminates the WebDriver session.
+     * Closes the browser of the calling thread and terminates its WebDriver session.
+     * Sessions owned by other threads are left untouched.
      */
     public static void quitDriver() {
-        if (driver != null) {
+        WebDriver current = currentDriver.get();
+        if (current != null) {
             logger.info("Quitting the driver...");
-            driver.quit();
-            driver = null;
+            currentDriver.remove();
+            quit(current);
             logger.info("Driver quit successfully.");
         } else {
             logger.warn("quitDriver() called but driver was already null.");
         }
     }
+
+    /**
+     * Quits a single session and forgets about it.
+     * Failures are logged rather than thrown so teardown of one session never prevents the next.
+     * @param session The session to quit.
+     */
+    static void quit(WebDriver session) {
+        activeDrivers.remove(session);
+        try {
+            session.quit();
+        } catch (Exception e) {
+            logger.error("Failed to quit driver: {}", e.getMessage());
+        }
+        // Only after quit: Chrome must have let go of the profile before it can be deleted
+        ChromeProfiles.release(session);
+    }
+
+    /**
+     * Checks whether the options already name a Chrome profile directory, in which case the caller owns it.
+     * @param options The options a session is about to be started with.
+     * @return true if a --user-data-dir argument is present.
+     */
+    @SuppressWarnings("unchecked")
+    private static boolean hasUserDataDir(ChromeOptions options) {
+        Object chromeOptions = options.asMap().get(ChromeOptions.CAPABILITY);
+        if (chromeOptions instanceof Map) {
+            Object args = ((Map<String, Object>) chromeOptions).get("args");
+            if (args instanceof List) {
+                for (Object arg : (List<Object>) args) {
+                    if (String.valueOf(arg).startsWith("--user-data-dir")) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Quits every session that is still open, regardless of which thread created it.
+     * Called from the JVM shutdown hook as a safety net for sessions a test did not clean up.
+     */
+    public static void quitAll() {
+        for (WebDriver session : activeDrivers) {
+            logger.warn("Quitting leaked driver session.");
+            quit(session);
+        }
+    }
 }
@@ -0,0 +1,236 @@
+package driver;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.chromium.HasCdp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * A bounded pool of warm browser sessions that test methods borrow and return
+ * instead of launching and quitting a browser each time.
+ * <p>
+ * Returned sessions are reset cheaply (cookies, local/session storage, about:blank).
+ * A session that fails its reset or the health check on borrow is quit and replaced.
+ */
+public class DriverPool {
+
+    private static final Logger logger = LogManager.getLogger(DriverPool.class);
+
+    // How long a borrower waits between checks for a free or recyclable session.
+    private static final long POLL_MILLIS = 100;
+
+    private static final String CLEAR_STORAGE_SCRIPT =
+            "try { window.localStorage.clear(); } catch (e) {}"
+            + "try { window.sessionStorage.clear(); } catch (e) {}";
+
+    private final Supplier<WebDriver> factory;
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+
+    // Idle sessions, most recently returned first so warm caches are reused.
+    private final BlockingDeque<WebDriver> idle = new LinkedBlockingDeque<>();
+
+    // One permit per session that may still be launched; bounds idle + borrowed sessions.
+    private final Semaphore capacity;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong recycled = new AtomicLong();
+    private final AtomicLong borrowNanos = new AtomicLong();
+
+    public DriverPool(Supplier<WebDriver> factory, int maxSize, long borrowTimeoutMillis) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Driver pool size must be at least 1, was " + maxSize);
+        }
+        this.factory = factory;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.capacity = new Semaphore(maxSize);
+    }
+
+    /**
+     * Launches up to {@code count} sessions in parallel so the first tests find a warm browser.
+     * @param count Number of sessions to pre-launch; capped at the pool size.
+     */
+    public void warmUp(int count) {
+        int toLaunch = Math.min(count, maxSize);
+        if (toLaunch <= 0) {
+            return;
+        }
+        logger.info("Pre-launching {} browser session(s)", toLaunch);
+        ExecutorService launcher = Executors.newFixedThreadPool(toLaunch);
+        try {
+            List<CompletableFuture<Void>> launches = new ArrayList<>();
+            for (int i = 0; i < toLaunch; i++) {
+                launches.add(CompletableFuture.runAsync(() -> {
+                    if (capacity.tryAcquire()) {
+                        try {
+                            idle.offerLast(factory.get());
+                        } catch (RuntimeException e) {
+                            capacity.release();
+                            logger.error("Failed to pre-launch browser session: {}", e.getMessage());
+                        }
+                    }
+                }, launcher));
+            }
+            CompletableFuture.allOf(launches.toArray(new CompletableFuture<?>[0])).join();
+        } finally {
+            launcher.shutdown();
+        }
+    }
+
+    /**
+     * Borrows a healthy session, launching a new one when none is idle and the pool is not full.
+     * Blocks up to the configured timeout when every session is in use.
+     * @return A session owned by the caller until {@link #release(WebDriver)}.
+     */
+    public WebDriver borrow() {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMillis);
+        try {
+            while (true) {
+                WebDriver session = idle.pollFirst();
+                if (session == null && capacity.tryAcquire()) {
+                    try {
+                        session = factory.get();
+                    } catch (RuntimeException e) {
+                        capacity.release();
+                        throw e;
+                    }
+                    misses.incrementAndGet();
+                    return session;
+                }
+                if (session == null) {
+                    if (System.nanoTime() > deadline) {
+                        throw new IllegalStateException("No browser session became available within "
+                                + borrowTimeoutMillis + " ms (pool size " + maxSize + ")");
+                    }
+                    session = idle.pollFirst(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (session == null) {
+                        continue;
+                    }
+                }
+                if (isHealthy(session)) {
+                    hits.incrementAndGet();
+                    return session;
+                }
+                logger.warn("Pooled browser session failed its health check; recycling it.");
+                discard(session);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a browser session", e);
+        } finally {
+            borrowNanos.addAndGet(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Resets a session and makes it available to the next borrower.
+     * Sessions that cannot be reset are quit instead of being returned.
+     * @param session The session previously obtained from {@link #borrow()}; null is ignored.
+     */
+    public void release(WebDriver session) {
+        if (session == null) {
+            return;
+        }
+        try {
+            reset(session);
+            idle.offerFirst(session);
+        } catch (Exception e) {
+            logger.warn("Failed to reset browser session ({}); recycling it.", e.getMessage());
+            discard(session);
+        }
+    }
+
+    /**
+     * Quits every idle session. Borrowed sessions are quit by the JVM shutdown hook in {@link DriverFactory}.
+     */
+    public void shutdown() {
+        WebDriver session;
+        while ((session = idle.pollFirst()) != null) {
+            discard(session);
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getRecycled() {
+        return recycled.get();
+    }
+
+    /**
+     * @return Average time spent in {@link #borrow()}, in milliseconds.
+     */
+    public double getAverageBorrowMillis() {
+        long borrows = hits.get() + misses.get();
+        return borrows == 0 ? 0 : borrowNanos.get() / 1_000_000.0 / borrows;
+    }
+
+    /**
+     * @return A one-line summary of pool usage for logs and reports.
+     */
+    public String getStats() {
+        return String.format("Driver pool (size %d): %d hits, %d misses, %d recycled, avg borrow %.1f ms",
+                maxSize, getHits(), getMisses(), getRecycled(), getAverageBorrowMillis());
+    }
+
+    private boolean isHealthy(WebDriver session) {
+        try {
+            session.getWindowHandle();
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private void reset(WebDriver session) {
+        // Storage is per origin, so it has to be cleared before navigating away from the test page.
+        if (session instanceof JavascriptExecutor) {
+            ((JavascriptExecutor) session).executeScript(CLEAR_STORAGE_SCRIPT);
+        }
+        if (session instanceof HasCdp) {
+            // deleteAllCookies() only covers the current domain; CDP clears every domain in one call.
+            ((HasCdp) session).executeCdpCommand("Network.clearBrowserCookies", Map.of());
+        } else {
+            session.manage().deleteAllCookies();
+        }
+
+        // Close windows a test may have opened, keeping only the first one.
+        List<String> handles = new ArrayList<>(session.getWindowHandles());
+        for (int i = 1; i < handles.size(); i++) {
+            session.switchTo().window(handles.get(i)).close();
+        }
+        session.switchTo().window(handles.get(0));
+        session.get("about:blank");
+    }
+
+    private void discard(WebDriver session) {
+        recycled.incrementAndGet();
+        try {
+            DriverFactory.quit(session);
+        } finally {
+            capacity.release();
+        }
+    }
+}
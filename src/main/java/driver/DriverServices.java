@@ -0,0 +1,225 @@
+package driver;
+
+import listeners.ParallelismListener;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.chrome.ChromeDriverService;
+import org.openqa.selenium.firefox.GeckoDriverService;
+import utils.Config;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A small, fixed set of chromedriver/geckodriver server processes started once per JVM,
+ * so new browser sessions do not each spawn their own driver server.
+ * <p>
+ * chromedriver serves many sessions concurrently, so Chrome sessions are spread over the
+ * least busy service. geckodriver only allows one session at a time, so a Gecko service is
+ * leased exclusively and handed to the next session once the previous one quits.
+ * <p>
+ * Selenium stops a session's service when the session quits; the shared services below
+ * treat that call as "session finished" and keep the process running until {@link #shutdownAll()}.
+ */
+public final class DriverServices {
+
+    private static final Logger logger = LogManager.getLogger(DriverServices.class);
+
+
+    private static final boolean enabled = Config.get().getBoolean("driverServices.enabled", true);
+
+    private static final List<SharedChromeService> chromeServices = new CopyOnWriteArrayList<>();
+
+    private static final List<SharedGeckoService> geckoServices = new CopyOnWriteArrayList<>();
+    private static final BlockingQueue<SharedGeckoService> idleGeckoServices = new LinkedBlockingQueue<>();
+
+    private DriverServices() {
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return The running chromedriver service with the fewest active sessions, starting the set on first use.
+     */
+    public static ChromeDriverService chrome() {
+        if (chromeServices.isEmpty()) {
+            startChromeServices();
+        }
+        SharedChromeService service = chromeServices.stream()
+                .min(Comparator.comparingInt(s -> s.activeSessions.get()))
+                .orElseThrow();
+        service.ensureRunning();
+        service.activeSessions.incrementAndGet();
+        return service;
+    }
+
+    /**
+     * @return A geckodriver service leased to the caller until its session quits.
+     */
+    public static GeckoDriverService gecko() {
+        SharedGeckoService service = idleGeckoServices.poll();
+        if (service == null) {
+            service = startGeckoServiceIfBelowLimit();
+        }
+        if (service == null) {
+            try {
+                service = idleGeckoServices.poll(5, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (service == null) {
+                throw new WebDriverException("No geckodriver service became free");
+            }
+        }
+        service.ensureRunning();
+        return service;
+    }
+
+    /**
+     * Stops every shared driver process. Called from the suite-level teardown and the JVM shutdown hook.
+     */
+    public static synchronized void shutdownAll() {
+        List<SharedService> all = new ArrayList<>(chromeServices);
+        all.addAll(geckoServices);
+        chromeServices.clear();
+        geckoServices.clear();
+        idleGeckoServices.clear();
+        for (SharedService service : all) {
+            service.shutdown();
+        }
+        if (!all.isEmpty()) {
+            logger.info("Stopped {} shared driver service(s)", all.size());
+        }
+    }
+
+    private static synchronized void startChromeServices() {
+        if (!chromeServices.isEmpty()) {
+            return;
+        }
+        int count = intProperty("driverServices.chrome.count", 2);
+        for (int i = 0; i < count; i++) {
+            SharedChromeService service = (SharedChromeService) new SharedChromeBuilder().usingAnyFreePort().build();
+            service.ensureRunning();
+            chromeServices.add(service);
+        }
+        logger.info("Started {} shared chromedriver service(s)", count);
+    }
+
+    private static synchronized SharedGeckoService startGeckoServiceIfBelowLimit() {
+        int max = intProperty("driverServices.gecko.count", ParallelismListener.resolveThreadCount());
+        if (geckoServices.size() >= max) {
+            return null;
+        }
+        SharedGeckoService service = (SharedGeckoService) new SharedGeckoBuilder().usingAnyFreePort().build();
+        geckoServices.add(service);
+        logger.info("Started shared geckodriver service {}/{}", geckoServices.size(), max);
+        return service;
+    }
+
+    private static int intProperty(String key, int defaultValue) {
+        return Math.max(1, Config.get().getInt(key, defaultValue));
+    }
+
+    private interface SharedService {
+        void shutdown();
+    }
+
+    private static final class SharedChromeService extends ChromeDriverService implements SharedService {
+        private final AtomicInteger activeSessions = new AtomicInteger();
+
+        SharedChromeService(File executable, int port, Duration timeout, List<String> args,
+                            Map<String, String> environment) throws IOException {
+            super(executable, port, timeout, args, environment);
+        }
+
+        void ensureRunning() {
+            try {
+                if (!isRunning()) {
+                    super.stop(); // clears a dead process so start() launches a new one
+                    start();
+                }
+            } catch (IOException e) {
+                throw new WebDriverException("Could not start shared chromedriver service", e);
+            }
+        }
+
+        /** Called by Selenium when a session on this service quits; the process stays up. */
+        @Override
+        public void stop() {
+            activeSessions.updateAndGet(n -> Math.max(0, n - 1));
+        }
+
+        @Override
+        public void shutdown() {
+            super.stop();
+        }
+    }
+
+    private static final class SharedGeckoService extends GeckoDriverService implements SharedService {
+        SharedGeckoService(File executable, int port, Duration timeout, List<String> args,
+                           Map<String, String> environment) throws IOException {
+            super(executable, port, timeout, args, environment);
+        }
+
+        void ensureRunning() {
+            try {
+                if (!isRunning()) {
+                    super.stop();
+                    start();
+                }
+            } catch (IOException e) {
+                throw new WebDriverException("Could not start shared geckodriver service", e);
+            }
+        }
+
+        /** Called by Selenium when the session on this service quits; the service is free for the next session. */
+        @Override
+        public void stop() {
+            if (geckoServices.contains(this)) {
+                idleGeckoServices.offer(this);
+            }
+        }
+
+        @Override
+        public void shutdown() {
+            super.stop();
+        }
+    }
+
+    private static final class SharedChromeBuilder extends ChromeDriverService.Builder {
+        @Override
+        protected SharedChromeService createDriverService(File exe, int port, Duration timeout, List<String> args,
+                                                          Map<String, String> environment) {
+            try {
+                return new SharedChromeService(exe, port, timeout, args, environment);
+            } catch (IOException e) {
+                throw new WebDriverException(e);
+            }
+        }
+    }
+
+    private static final class SharedGeckoBuilder extends GeckoDriverService.Builder {
+        @Override
+        protected SharedGeckoService createDriverService(File exe, int port, Duration timeout, List<String> args,
+                                                         Map<String, String> environment) {
+            try {
+                return new SharedGeckoService(exe, port, timeout, args, environment);
+            } catch (IOException e) {
+                throw new WebDriverException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package driver;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.PageLoadStrategy;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.chrome.ChromeOptions;
+import org.openqa.selenium.devtools.Command;
+import org.openqa.selenium.devtools.DevTools;
+import org.openqa.selenium.devtools.Event;
+import org.openqa.selenium.devtools.HasDevTools;
+import org.openqa.selenium.firefox.FirefoxOptions;
+import utils.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A named set of page-load settings, chosen with {@code perf.profile} in config.properties.
+ * <p>
+ * A profile sets the page load strategy and a list of URL patterns (with {@code *} wildcards) for
+ * resources the tests never assert on, such as images, web fonts and analytics scripts. Chrome blocks
+ * them through the DevTools protocol ({@code Network.setBlockedURLs}, with the HTTP cache kept on).
+ * Firefox has no URL blocking without a proxy, so it gets the closest preferences instead: images and
+ * document fonts are turned off. The profile "default" changes nothing.
+ * <p>
+ * Blocked requests are counted per run. Blocked resources are never fetched, so the bytes they would
+ * have cost cannot be measured; the stats report the bytes that were transferred and the cache hits instead.
+ */
+public final class PerformanceProfile {
+
+    private static final Logger logger = LogManager.getLogger(PerformanceProfile.class);
+
+    private static final PerformanceProfile ACTIVE = fromConfig(Config.get());
+
+    private static final Map<String, LongAdder> blockedByType = new ConcurrentHashMap<>();
+    private static final AtomicLong servedFromCache = new AtomicLong();
+    private static final AtomicLong bytesTransferred = new AtomicLong();
+
+    private final String name;
+    private final PageLoadStrategy pageLoadStrategy;
+    private final List<String> blockedUrls;
+
+    private PerformanceProfile(String name, PageLoadStrategy pageLoadStrategy, List<String> blockedUrls) {
+        this.name = name;
+        this.pageLoadStrategy = pageLoadStrategy;
+        this.blockedUrls = blockedUrls;
+    }
+
+    /**
+     * @return The profile selected in config.properties.
+     */
+    public static PerformanceProfile active() {
+        return ACTIVE;
+    }
+
+    static PerformanceProfile fromConfig(Config config) {
+        String name = config.getString("perf.profile", "default").trim();
+        String prefix = "perf.profile." + name + ".";
+        PageLoadStrategy strategy = PageLoadStrategy.fromString(config.getString(prefix + "pageLoadStrategy", "normal").trim());
+        List<String> blocked = new ArrayList<>();
+        for (String pattern : config.getString(prefix + "blockedUrls", "").split(",")) {
+            if (!pattern.isBlank()) {
+                blocked.add(pattern.trim());
+            }
+        }
+        if (strategy == null) {
+            throw new IllegalArgumentException("Unknown page load strategy in profile '" + name + "'");
+        }
+        logger.info("Performance profile '{}': page load strategy {}, {} blocked URL pattern(s)", name, strategy, blocked.size());
+        return new PerformanceProfile(name, strategy, blocked);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public PageLoadStrategy getPageLoadStrategy() {
+        return pageLoadStrategy;
+    }
+
+    /**
+     * Applies the page load strategy to Chrome options. URL blocking happens once the session exists, see {@link #attach}.
+     */
+    public void apply(ChromeOptions options) {
+        options.setPageLoadStrategy(pageLoadStrategy);
+    }
+
+    /**
+     * Applies the page load strategy and the nearest preference equivalents of the blocked patterns.
+     */
+    public void apply(FirefoxOptions options) {
+        options.setPageLoadStrategy(pageLoadStrategy);
+        if (blocksAny(".png", ".jpg", ".jpeg", ".gif", ".webp", ".svg")) {
+            options.addPreference("permissions.default.image", 2);
+        }
+        if (blocksAny(".woff", ".woff2", ".ttf", ".otf")) {
+            options.addPreference("browser.display.use_document_fonts", 0);
+        }
+    }
+
+    /**
+     * Starts blocking the profile's URL patterns in a new Chrome session and counts what gets blocked.
+     * Browsers without DevTools support are left alone.
+     */
+    public void attach(WebDriver driver) {
+        if (blockedUrls.isEmpty() || !(driver instanceof HasDevTools)) {
+            return;
+        }
+        try {
+            DevTools devTools = ((HasDevTools) driver).getDevTools();
+            devTools.createSessionIfThereIsNotOne();
+            devTools.addListener(event("Network.loadingFailed"), params -> {
+                if (params.get("blockedReason") != null) {
+                    blockedByType.computeIfAbsent(String.valueOf(params.get("type")), t -> new LongAdder()).increment();
+                }
+            });
+            devTools.addListener(event("Network.requestServedFromCache"), params -> servedFromCache.incrementAndGet());
+            devTools.addListener(event("Network.loadingFinished"), params -> {
+                Object length = params.get("encodedDataLength");
+                if (length instanceof Number) {
+                    bytesTransferred.addAndGet(((Number) length).longValue());
+                }
+            });
+            devTools.send(new Command<Void>("Network.enable", Map.of()));
+            devTools.send(new Command<Void>("Network.setCacheDisabled", Map.of("cacheDisabled", false)));
+            devTools.send(new Command<Void>("Network.setBlockedURLs", Map.of("urls", blockedUrls)));
+            logger.debug("Blocking {} URL pattern(s) in this session", blockedUrls.size());
+        } catch (RuntimeException e) {
+            logger.warn("Could not enable resource blocking for profile '{}': {}", name, e.getMessage());
+        }
+    }
+
+    /**
+     * @return A one-line summary of blocked requests by resource type, cache hits and transferred bytes.
+     */
+    public static String getStats() {
+        long blocked = blockedByType.values().stream().mapToLong(LongAdder::sum).sum();
+        StringBuilder byType = new StringBuilder();
+        blockedByType.forEach((type, count) -> byType.append(byType.length() == 0 ? "" : ", ").append(type).append('=').append(count.sum()));
+        return String.format("Performance profile '%s': %d request(s) blocked [%s], %d served from cache, %d KB transferred",
+                ACTIVE.name, blocked, byType, servedFromCache.get(), bytesTransferred.get() / 1024);
+    }
+
+    private boolean blocksAny(String... extensions) {
+        return blockedUrls.stream().anyMatch(pattern -> Arrays.stream(extensions).anyMatch(pattern::endsWith));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Event<Map<String, Object>> event(String method) {
+        return new Event<>(method, input -> (Map<String, Object>) input.read(Map.class));
+    }
+}
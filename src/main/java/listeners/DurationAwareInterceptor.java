@@ -0,0 +1,167 @@
+package listeners;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.testng.IDataProviderInterceptor;
+import org.testng.IDataProviderMethod;
+import org.testng.IMethodInstance;
+import org.testng.IMethodInterceptor;
+import org.testng.ISuite;
+import org.testng.ISuiteListener;
+import org.testng.ITestContext;
+import org.testng.ITestListener;
+import org.testng.ITestNGMethod;
+import org.testng.ITestResult;
+import utils.Config;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Starts the longest work first, so the last thread to finish is not stuck with a slow test that
+ * happened to be scheduled late.
+ * <p>
+ * Methods are ordered by priority, then by their historical duration (all data rows together),
+ * longest first; every method still comes after the methods it {@code dependsOnMethods}. Rows of a
+ * data provider are reordered the same way once any of them has a recorded duration, within a sliding
+ * window of {@code history.rowWindow} rows so a streamed sheet is never held in memory. Methods and rows
+ * without history get the default estimate ({@code history.defaultEstimateMillis}).
+ * Durations are recorded as tests finish, skipped ones included, and saved to {@link TestHistory} when the suite ends.
+ * Must be registered in testng.xml.
+ */
+public class DurationAwareInterceptor implements IMethodInterceptor, IDataProviderInterceptor, ITestListener, ISuiteListener {
+
+    private static final Logger logger = LogManager.getLogger(DurationAwareInterceptor.class);
+
+    // Rows held at once while reordering a data provider; the longest of them runs next.
+    private static final int ROW_WINDOW = Math.max(1, Config.get().getInt("history.rowWindow", 256));
+
+    @Override
+    public List<IMethodInstance> intercept(List<IMethodInstance> methods, ITestContext context) {
+        TestHistory history = TestHistory.get();
+        Map<IMethodInstance, Long> estimates = new HashMap<>();
+        for (IMethodInstance instance : methods) {
+            estimates.put(instance, history.totalEstimate(instance.getMethod().getQualifiedName()));
+        }
+
+        List<IMethodInstance> sorted = new ArrayList<>(methods);
+        sorted.sort(Comparator.<IMethodInstance>comparingInt(m -> m.getMethod().getPriority())
+                .thenComparing(Comparator.<IMethodInstance>comparingLong(estimates::get).reversed()));
+
+        List<IMethodInstance> ordered = respectDependencies(sorted);
+        if (logger.isDebugEnabled()) {
+            for (IMethodInstance instance : ordered) {
+                logger.debug("  {} (~{} ms)", instance.getMethod().getQualifiedName(), estimates.get(instance));
+            }
+        }
+        logger.info("Ordered {} method(s) of '{}' longest-first", ordered.size(), context.getName());
+        return ordered;
+    }
+
+    // Keeps the sorted order but moves every method behind the methods it depends on.
+    private static List<IMethodInstance> respectDependencies(List<IMethodInstance> sorted) {
+        Map<String, List<IMethodInstance>> byName = new LinkedHashMap<>();
+        for (IMethodInstance instance : sorted) {
+            byName.computeIfAbsent(instance.getMethod().getQualifiedName(), k -> new ArrayList<>()).add(instance);
+        }
+        List<IMethodInstance> ordered = new ArrayList<>(sorted.size());
+        Set<IMethodInstance> placed = new HashSet<>();
+        Set<IMethodInstance> visiting = new HashSet<>();
+        for (IMethodInstance instance : sorted) {
+            place(instance, byName, placed, visiting, ordered);
+        }
+        return ordered;
+    }
+
+    private static void place(IMethodInstance instance, Map<String, List<IMethodInstance>> byName,
+                              Set<IMethodInstance> placed, Set<IMethodInstance> visiting, List<IMethodInstance> ordered) {
+        if (placed.contains(instance) || !visiting.add(instance)) {
+            return; // already placed, or a dependency cycle that TestNG itself will report
+        }
+        for (String dependency : instance.getMethod().getMethodsDependedUpon()) {
+            for (IMethodInstance upstream : byName.getOrDefault(dependency, List.of())) {
+                place(upstream, byName, placed, visiting, ordered);
+            }
+        }
+        visiting.remove(instance);
+        placed.add(instance);
+        ordered.add(instance);
+    }
+
+    @Override
+    public Iterator<Object[]> intercept(Iterator<Object[]> original, IDataProviderMethod dataProviderMethod,
+                                        ITestNGMethod method, ITestContext context) {
+        TestHistory history = TestHistory.get();
+        String name = method.getQualifiedName();
+        if (!history.hasRows(name)) {
+            return original; // nothing to sort by, so keep streaming
+        }
+        long fallback = history.methodEstimate(name);
+        // Longest estimate first; rows with equal estimates keep their sheet order.
+        PriorityQueue<WindowedRow> window = new PriorityQueue<>(Comparator.comparingLong((WindowedRow r) -> r.estimate)
+                .reversed().thenComparingLong(r -> r.sequence));
+        logger.debug("Ordering rows of {} longest-first within windows of {}", name, ROW_WINDOW);
+        return new Iterator<>() {
+            private long sequence;
+
+            @Override
+            public boolean hasNext() {
+                while (window.size() < ROW_WINDOW && original.hasNext()) {
+                    Object[] row = original.next();
+                    Long estimate = history.rowEstimate(name, TestHistory.rowKey(row));
+                    window.add(new WindowedRow(row, estimate != null ? estimate : fallback, sequence++));
+                }
+                return !window.isEmpty();
+            }
+
+            @Override
+            public Object[] next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return window.poll().row;
+            }
+        };
+    }
+
+    private static final class WindowedRow {
+        final Object[] row;
+        final long estimate;
+        final long sequence;
+
+        WindowedRow(Object[] row, long estimate, long sequence) {
+            this.row = row;
+            this.estimate = estimate;
+            this.sequence = sequence;
+        }
+    }
+
+    @Override
+    public void onTestSuccess(ITestResult result) {
+        TestHistory.get().record(result);
+    }
+
+    @Override
+    public void onTestFailure(ITestResult result) {
+        TestHistory.get().record(result);
+    }
+
+    @Override
+    public void onTestSkipped(ITestResult result) {
+        TestHistory.get().record(result);
+    }
+
+    @Override
+    public void onFinish(ISuite suite) {
+        TestHistory.get().save();
+    }
+}
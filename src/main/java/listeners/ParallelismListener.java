@@ -0,0 +1,72 @@
+package listeners;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.testng.IAlterSuiteListener;
+import org.testng.xml.XmlSuite;
+import utils.Config;
+
+import java.util.List;
+
+/**
+ * Sizes the TestNG worker pool before the suite starts.
+ * The thread count comes from -Dthreads, then the "threadCount" config key,
+ * and falls back to one thread per available CPU core.
+ * Rows of {@code @DataProvider(parallel = true)} methods get their own pool, sized by
+ * -DdataProviderThreads, then the "dataProviderThreadCount" config key, then the thread count; that
+ * pool is shared by all data-provider methods so the number of rows in flight stays bounded.
+ * Must be registered in testng.xml, because suite alteration happens before @Listeners are read.
+ */
+public class ParallelismListener implements IAlterSuiteListener {
+
+    private static final Logger logger = LogManager.getLogger(ParallelismListener.class);
+
+    @Override
+    public void alter(List<XmlSuite> suites) {
+        int threads = resolveThreadCount();
+        int dataProviderThreads = resolveDataProviderThreadCount();
+        for (XmlSuite suite : suites) {
+            suite.setThreadCount(threads);
+            suite.setDataProviderThreadCount(dataProviderThreads);
+            suite.setShareThreadPoolForDataProviders(true);
+            logger.info("Suite '{}' will run with parallel={}, {} threads and {} data provider threads",
+                    suite.getName(), suite.getParallel(), threads, dataProviderThreads);
+        }
+    }
+
+    public static int resolveThreadCount() {
+        return resolve("threads", "threadCount", Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @return How many rows of one parallel data provider may run at the same time.
+     */
+    public static int resolveDataProviderThreadCount() {
+        return resolve("dataProviderThreads", "dataProviderThreadCount", resolveThreadCount());
+    }
+
+    /**
+     * Browser sessions the suite can hold at once. While a method's rows run on the shared data-provider
+     * pool, its own thread waits without a browser, but every other method thread may still hold one.
+     * @return threads - 1 + data provider threads.
+     */
+    public static int resolvePeakSessions() {
+        return resolveThreadCount() - 1 + resolveDataProviderThreadCount();
+    }
+
+    private static int resolve(String systemProperty, String configKey, int fallback) {
+        String value = System.getProperty(systemProperty);
+        if (value == null || value.isBlank()) {
+            value = Config.get().getString(configKey);
+        }
+        if (value == null || value.isBlank()) {
+            return fallback;
+        }
+        try {
+            return Math.max(1, Integer.parseInt(value.trim()));
+        } catch (NumberFormatException e) {
+            logger.warn("Ignoring invalid {} '{}'", configKey, value);
+            return fallback;
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package listeners;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.testng.IDataProviderInterceptor;
+import org.testng.IDataProviderMethod;
+import org.testng.ISuite;
+import org.testng.ISuiteListener;
+import org.testng.ITestContext;
+import org.testng.ITestListener;
+import org.testng.ITestNGMethod;
+import org.testng.ITestResult;
+import utils.Config;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lets a data-driven run that died halfway pick up where it stopped.
+ * <p>
+ * Every data-provider row that passes is appended to a checkpoint file in the history directory as
+ * "method rowKey", where the row key is the hash of the row's values ({@link TestHistory#rowKey}).
+ * A run started with {@code -Dresume=true} skips the rows the file lists and runs only the failed
+ * and never-run ones; a changed row has a different key, so it runs again. Without {@code -Dresume}
+ * the file is started afresh. Each shard ({@code -Dshard=i/N}) keeps its own file.
+ * Set {@code checkpoint.enabled=false} to turn this off. Must be registered in testng.xml.
+ */
+public class RunCheckpoint implements IDataProviderInterceptor, ITestListener, ISuiteListener {
+
+    private static final Logger logger = LogManager.getLogger(RunCheckpoint.class);
+
+    private final boolean enabled = Config.get().getBoolean("checkpoint.enabled", true);
+    private final boolean resume = Config.get().getBoolean("resume", false);
+    private final Path file = TestHistory.HISTORY_DIR.resolve(fileName(Config.get().getString("shard", "").trim()));
+
+    // "method rowKey" of every row that has passed, in this run or (when resuming) an earlier one.
+    private final Set<String> passed = ConcurrentHashMap.newKeySet();
+    private final AtomicLong skipped = new AtomicLong();
+
+    private BufferedWriter out;
+
+    public RunCheckpoint() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Files.createDirectories(file.getParent());
+            if (resume && Files.isRegularFile(file)) {
+                for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                    if (!line.isBlank()) {
+                        passed.add(line.trim());
+                    }
+                }
+                logger.info("Resuming: {} passed row(s) in {} will be skipped", passed.size(), file);
+                // The skipped rows would make this run's per-method totals look too short.
+                TestHistory.get().markPartialRun();
+                out = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            } else {
+                out = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            }
+        } catch (IOException e) {
+            logger.warn("Checkpointing disabled, cannot use {}: {}", file, e.getMessage());
+            out = null;
+        }
+    }
+
+    @Override
+    public Iterator<Object[]> intercept(Iterator<Object[]> original, IDataProviderMethod dataProviderMethod,
+                                        ITestNGMethod method, ITestContext context) {
+        if (!resume || passed.isEmpty()) {
+            return original;
+        }
+        String name = method.getQualifiedName();
+        // Filters lazily, like ShardingListener, so a streamed sheet is never held in memory.
+        return new Iterator<>() {
+            private Object[] next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && original.hasNext()) {
+                    Object[] row = original.next();
+                    if (passed.contains(name + " " + TestHistory.rowKey(row))) {
+                        skipped.incrementAndGet();
+                    } else {
+                        next = row;
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public Object[] next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Object[] row = next;
+                next = null;
+                return row;
+            }
+        };
+    }
+
+    @Override
+    public void onTestSuccess(ITestResult result) {
+        Object[] params = result.getParameters();
+        if (params == null || params.length == 0) {
+            return;
+        }
+        String entry = result.getMethod().getQualifiedName() + " " + TestHistory.rowKey(params);
+        if (!passed.add(entry)) {
+            return;
+        }
+        // One short line handed to the OS per row: survives the JVM being killed, costs no fsync.
+        synchronized (this) {
+            if (out == null) {
+                return;
+            }
+            try {
+                out.write(entry);
+                out.newLine();
+                out.flush();
+            } catch (IOException e) {
+                logger.warn("Could not write checkpoint {}: {}", file, e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void onFinish(ISuite suite) {
+        if (resume) {
+            logger.info("Resumed run skipped {} row(s) that had already passed", skipped.get());
+        }
+        synchronized (this) {
+            if (out != null) {
+                try {
+                    out.close();
+                } catch (IOException e) {
+                    logger.warn("Could not close checkpoint {}: {}", file, e.getMessage());
+                }
+                out = null;
+            }
+        }
+    }
+
+    // checkpoint.log, or checkpoint-shard2of4.log for -Dshard=2/4
+    private static String fileName(String shard) {
+        return shard.isEmpty() ? "checkpoint.log" : "checkpoint-shard" + shard.replace("/", "of") + ".log";
+    }
+}
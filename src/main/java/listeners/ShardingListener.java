@@ -0,0 +1,229 @@
+package listeners;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.testng.IDataProviderInterceptor;
+import org.testng.IDataProviderMethod;
+import org.testng.IMethodInstance;
+import org.testng.IMethodInterceptor;
+import org.testng.ISuite;
+import org.testng.ITestContext;
+import org.testng.ITestNGMethod;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Runs only one shard of the suite when started with {@code -Dshard=i/N} (i from 1 to N), so one
+ * testng.xml can be split across N Maven forks or CI nodes that finish at about the same time.
+ * <p>
+ * The units of work are groups of methods linked by {@code dependsOnMethods}, which always stay
+ * together, and individual data-provider rows with a recorded duration. They are spread with greedy
+ * longest-processing-time bin packing on their {@link TestHistory} durations; every shard computes
+ * the same plan from the same history. Rows that have never run are assigned by the hash of their
+ * values. Data-driven methods therefore run in every shard, each with its own share of the rows.
+ * Without {@code -Dshard} the listener does nothing. Must be registered in testng.xml.
+ */
+public class ShardingListener implements IMethodInterceptor, IDataProviderInterceptor {
+
+    private static final Logger logger = LogManager.getLogger(ShardingListener.class);
+
+    private final int shardIndex;
+    private final int shardCount;
+
+    // Unit id -> shard number (0-based), built once per suite.
+    private volatile Map<String, Integer> plan;
+
+    public ShardingListener() {
+        String shard = System.getProperty("shard", "").trim();
+        if (shard.isEmpty()) {
+            shardIndex = 0;
+            shardCount = 1;
+            return;
+        }
+        String[] parts = shard.split("/");
+        try {
+            shardIndex = Integer.parseInt(parts[0].trim()) - 1;
+            shardCount = Integer.parseInt(parts[1].trim());
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("-Dshard must look like i/N, e.g. 2/4, but was '" + shard + "'", e);
+        }
+        if (shardCount < 1 || shardIndex < 0 || shardIndex >= shardCount) {
+            throw new IllegalArgumentException("-Dshard=" + shard + " is out of range; use 1/N to N/N");
+        }
+        TestHistory.get().markPartialRun();
+    }
+
+    private boolean isSharded() {
+        return shardCount > 1;
+    }
+
+    @Override
+    public List<IMethodInstance> intercept(List<IMethodInstance> methods, ITestContext context) {
+        if (!isSharded()) {
+            return methods;
+        }
+        Map<String, Integer> assignment = plan(context.getSuite());
+        List<IMethodInstance> kept = new ArrayList<>();
+        for (IMethodInstance instance : methods) {
+            ITestNGMethod method = instance.getMethod();
+            Integer shard = assignment.get(method.getQualifiedName());
+            // Data-driven methods run everywhere; their rows are split in the data provider interceptor below.
+            if (isDataDriven(method) || shard == null || shard == shardIndex) {
+                kept.add(instance);
+            }
+        }
+        logger.info("Shard {}/{}: running {} of {} method(s) of '{}'",
+                shardIndex + 1, shardCount, kept.size(), methods.size(), context.getName());
+        return kept;
+    }
+
+    @Override
+    public Iterator<Object[]> intercept(Iterator<Object[]> original, IDataProviderMethod dataProviderMethod,
+                                        ITestNGMethod method, ITestContext context) {
+        if (!isSharded()) {
+            return original;
+        }
+        Map<String, Integer> assignment = plan(context.getSuite());
+        String name = method.getQualifiedName();
+        // Filters lazily, so a streamed sheet is still never held in memory.
+        return new Iterator<>() {
+            private Object[] next;
+
+            @Override
+            public boolean hasNext() {
+                while (next == null && original.hasNext()) {
+                    Object[] row = original.next();
+                    String rowKey = TestHistory.rowKey(row);
+                    Integer shard = assignment.get(name + "#" + rowKey);
+                    int owner = shard != null ? shard : Math.floorMod(rowKey.hashCode(), shardCount);
+                    if (owner == shardIndex) {
+                        next = row;
+                    }
+                }
+                return next != null;
+            }
+
+            @Override
+            public Object[] next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                Object[] row = next;
+                next = null;
+                return row;
+            }
+        };
+    }
+
+    private Map<String, Integer> plan(ISuite suite) {
+        if (plan == null) {
+            synchronized (this) {
+                if (plan == null) {
+                    plan = buildPlan(suite.getAllMethods());
+                }
+            }
+        }
+        return plan;
+    }
+
+    private Map<String, Integer> buildPlan(List<ITestNGMethod> methods) {
+        TestHistory history = TestHistory.get();
+
+        // Unit id -> estimated cost, plus the method names each method group stands for.
+        Map<String, Long> costs = new TreeMap<>();
+        Map<String, List<String>> members = new HashMap<>();
+        for (List<ITestNGMethod> group : dependencyGroups(methods)) {
+            String unit = group.get(0).getQualifiedName();
+            long cost = 0;
+            List<String> names = new ArrayList<>();
+            for (ITestNGMethod method : group) {
+                String name = method.getQualifiedName();
+                names.add(name);
+                if (isDataDriven(method)) {
+                    history.rowEstimates(name).forEach((rowKey, millis) -> costs.put(name + "#" + rowKey, millis));
+                } else {
+                    cost += history.methodEstimate(name);
+                }
+            }
+            if (cost > 0) {
+                costs.put(unit, cost);
+                members.put(unit, names);
+            }
+        }
+
+        // Longest first onto the least loaded shard; ties broken by name, so every JVM gets the same plan.
+        List<Map.Entry<String, Long>> units = new ArrayList<>(costs.entrySet());
+        units.sort(Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey()));
+        long[] load = new long[shardCount];
+        Map<String, Integer> assignment = new HashMap<>();
+        for (Map.Entry<String, Long> unit : units) {
+            int target = 0;
+            for (int s = 1; s < shardCount; s++) {
+                if (load[s] < load[target]) {
+                    target = s;
+                }
+            }
+            load[target] += unit.getValue();
+            for (String name : members.getOrDefault(unit.getKey(), List.of(unit.getKey()))) {
+                assignment.put(name, target);
+            }
+        }
+        logger.info("Shard plan: {} unit(s) over {} shard(s), estimated load per shard (ms): {}",
+                units.size(), shardCount, Arrays.toString(load));
+        return assignment;
+    }
+
+    // Methods connected through dependsOnMethods (in either direction) form one group.
+    private static List<List<ITestNGMethod>> dependencyGroups(List<ITestNGMethod> methods) {
+        Map<String, ITestNGMethod> byName = new LinkedHashMap<>();
+        for (ITestNGMethod method : methods) {
+            byName.putIfAbsent(method.getQualifiedName(), method);
+        }
+        Map<String, String> parent = new HashMap<>();
+        for (String name : byName.keySet()) {
+            parent.put(name, name);
+        }
+        for (ITestNGMethod method : byName.values()) {
+            for (String dependency : method.getMethodsDependedUpon()) {
+                if (parent.containsKey(dependency)) {
+                    parent.put(root(parent, method.getQualifiedName()), root(parent, dependency));
+                }
+            }
+        }
+        Map<String, List<ITestNGMethod>> groups = new TreeMap<>();
+        for (ITestNGMethod method : byName.values()) {
+            groups.computeIfAbsent(root(parent, method.getQualifiedName()), k -> new ArrayList<>()).add(method);
+        }
+        List<List<ITestNGMethod>> result = new ArrayList<>();
+        for (List<ITestNGMethod> group : groups.values()) {
+            group.sort(Comparator.comparing(ITestNGMethod::getQualifiedName));
+            result.add(group);
+        }
+        return result;
+    }
+
+    private static String root(Map<String, String> parent, String name) {
+        Set<String> seen = new HashSet<>();
+        while (!parent.get(name).equals(name) && seen.add(name)) {
+            name = parent.get(name);
+        }
+        return name;
+    }
+
+    private static boolean isDataDriven(ITestNGMethod method) {
+        Test test = method.getConstructorOrMethod().getMethod().getAnnotation(Test.class);
+        return test != null && (!test.dataProvider().isEmpty() || method.isDataDriven());
+    }
+}
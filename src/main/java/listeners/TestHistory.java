@@ -0,0 +1,298 @@
+package listeners;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.json.Json;
+import org.testng.ITestResult;
+import utils.Config;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Remembers how long each test method, and each data-provider row of it, took in earlier runs.
+ * <p>
+ * Durations come from a small store in {@code history.dir} (default {@code test-history/durations.properties}),
+ * which this class keeps up to date as an exponentially weighted average. Methods the store has not seen
+ * are looked up in the newest Allure result of each invocation. Rows are identified by a short hash of their parameter
+ * values, so the same spreadsheet row keeps its history when rows are added or reordered.
+ * <p>
+ * Several JVMs (forks, shards) may finish at the same time: each merges its measurements into the
+ * file as it is on disk at that moment and replaces it atomically.
+ */
+public final class TestHistory {
+
+    private static final Logger logger = LogManager.getLogger(TestHistory.class);
+
+    public static final Path HISTORY_DIR = Paths.get(Config.get().getString("history.dir", "test-history"));
+    private static final Path STORE = HISTORY_DIR.resolve("durations.properties");
+    private static final Path ALLURE_RESULTS = Paths.get(System.getProperty("allure.results.directory", "target/allure-results"));
+
+    private static final long DEFAULT_ESTIMATE_MILLIS = Config.get().getLong("history.defaultEstimateMillis", 10000);
+
+    // Weight of the newest measurement in the running average.
+    private static final double ALPHA = 0.5;
+
+    private static final String METHOD = "method.";
+    private static final String ROW = "row.";
+    private static final String TOTAL = "total.";
+
+    private static volatile TestHistory instance;
+
+    // Key -> average duration in milliseconds, as loaded at startup.
+    private final Map<String, Long> known = new ConcurrentHashMap<>();
+
+    // Key -> durations measured in this run, merged into the store by save().
+    private final Map<String, Long> measured = new ConcurrentHashMap<>();
+
+    // Method -> summed duration and number of invocations in this run.
+    private final Map<String, Long> runTotals = new ConcurrentHashMap<>();
+    private final Map<String, Long> runCounts = new ConcurrentHashMap<>();
+
+    private volatile boolean partialRun;
+
+    private TestHistory() {
+    }
+
+    /**
+     * @return The history of this JVM, loaded on first use.
+     */
+    public static TestHistory get() {
+        if (instance == null) {
+            synchronized (TestHistory.class) {
+                if (instance == null) {
+                    TestHistory history = new TestHistory();
+                    history.loadAllureResults();
+                    history.loadStore();
+                    instance = history;
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * @param method Qualified method name, e.g. "tests.SearchTest.searchProductTest".
+     * @return The average duration of one invocation, or the configured default when unknown.
+     */
+    public long methodEstimate(String method) {
+        return known.getOrDefault(METHOD + method, DEFAULT_ESTIMATE_MILLIS);
+    }
+
+    /**
+     * @return The average time all invocations of a method took together in one run (all its rows);
+     * the single-invocation estimate when unknown.
+     */
+    public long totalEstimate(String method) {
+        Long total = known.get(TOTAL + method);
+        return total != null ? total : methodEstimate(method);
+    }
+
+    /**
+     * @return The average duration of one data-provider row, or null when this row has never run.
+     */
+    public Long rowEstimate(String method, String rowKey) {
+        return known.get(ROW + method + "." + rowKey);
+    }
+
+    /**
+     * @return Every row of the method with a recorded duration: row key -> average milliseconds.
+     */
+    public Map<String, Long> rowEstimates(String method) {
+        String prefix = ROW + method + ".";
+        Map<String, Long> rows = new TreeMap<>();
+        known.forEach((key, millis) -> {
+            if (key.startsWith(prefix)) {
+                rows.put(key.substring(prefix.length()), millis);
+            }
+        });
+        return rows;
+    }
+
+    /**
+     * Marks this run as covering only part of the suite (e.g. one shard), so per-method totals,
+     * which would only cover some of the rows, are not saved.
+     */
+    public void markPartialRun() {
+        partialRun = true;
+    }
+
+    /**
+     * @return true if any row of the method has a recorded duration.
+     */
+    public boolean hasRows(String method) {
+        String prefix = ROW + method + ".";
+        return known.keySet().stream().anyMatch(key -> key.startsWith(prefix));
+    }
+
+    /**
+     * Records one finished invocation, whatever its outcome. A skipped invocation that never ran
+     * (e.g. its dependency failed) took no measurable time and is ignored.
+     */
+    public void record(ITestResult result) {
+        long millis = Math.max(0, result.getEndMillis() - result.getStartMillis());
+        if (result.getStatus() == ITestResult.SKIP && millis == 0) {
+            return;
+        }
+        String method = result.getMethod().getQualifiedName();
+        runTotals.merge(method, millis, Long::sum);
+        runCounts.merge(method, 1L, Long::sum);
+        Object[] params = result.getParameters();
+        if (params != null && params.length > 0) {
+            measured.put(ROW + method + "." + rowKey(params), millis);
+        }
+    }
+
+    /**
+     * Merges this run's measurements into the store on disk.
+     */
+    public synchronized void save() {
+        runTotals.forEach((method, total) -> {
+            measured.put(METHOD + method, total / runCounts.get(method));
+            if (!partialRun) {
+                measured.put(TOTAL + method, total);
+            }
+        });
+        runTotals.clear();
+        runCounts.clear();
+        if (measured.isEmpty()) {
+            return;
+        }
+        try {
+            Files.createDirectories(HISTORY_DIR);
+            Properties store = readStore();
+            measured.forEach((key, millis) -> {
+                String previous = store.getProperty(key);
+                long value = previous == null ? millis : Math.round(ALPHA * millis + (1 - ALPHA) * Long.parseLong(previous));
+                store.setProperty(key, Long.toString(value));
+            });
+            Path tmp = Files.createTempFile(HISTORY_DIR, "durations", ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                store.store(out, "Test durations in ms (exponentially weighted)");
+            }
+            Files.move(tmp, STORE, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.info("Saved {} duration(s) to {}", measured.size(), STORE);
+            measured.clear();
+        } catch (IOException e) {
+            logger.warn("Could not save test durations: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Identifies a data-provider row by its parameter values, the same way whether they come from
+     * TestNG or from the string values in an Allure result.
+     * @return The first 12 hex digits of the SHA-256 of the values.
+     */
+    public static String rowKey(Object[] params) {
+        StringBuilder joined = new StringBuilder();
+        for (Object param : params) {
+            joined.append(param).append('\u001f');
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(joined.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 6);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Properties readStore() {
+        Properties store = new Properties();
+        if (Files.isRegularFile(STORE)) {
+            try (InputStream in = Files.newInputStream(STORE)) {
+                store.load(in);
+            } catch (IOException | IllegalArgumentException e) {
+                logger.warn("Ignoring unreadable duration store {}: {}", STORE, e.getMessage());
+            }
+        }
+        return store;
+    }
+
+    private void loadStore() {
+        Properties store = readStore();
+        for (String key : store.stringPropertyNames()) {
+            try {
+                known.put(key, Long.parseLong(store.getProperty(key).trim()));
+            } catch (NumberFormatException e) {
+                // skip the odd hand-edited line
+            }
+        }
+        logger.info("Loaded {} duration(s) from {}", store.size(), STORE);
+    }
+
+    // Each Allure result file is one invocation: fullName, start/stop in ms and the parameters as strings.
+    // Allure keeps the results of earlier runs side by side, so only the newest result of each invocation
+    // (same historyId, or same method and parameters) counts.
+    @SuppressWarnings("unchecked")
+    private void loadAllureResults() {
+        if (!Files.isDirectory(ALLURE_RESULTS)) {
+            return;
+        }
+        Json json = new Json();
+        // Invocation -> {stop, duration} of its newest result, and the method and row it belongs to.
+        Map<String, long[]> newest = new ConcurrentHashMap<>();
+        Map<String, String> methods = new ConcurrentHashMap<>();
+        Map<String, String> rows = new ConcurrentHashMap<>();
+        try (Stream<Path> files = Files.list(ALLURE_RESULTS)) {
+            files.filter(file -> file.getFileName().toString().endsWith("-result.json")).forEach(file -> {
+                try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                    Map<String, Object> result = json.toType(reader, Map.class);
+                    Object fullName = result.get("fullName");
+                    Object start = result.get("start");
+                    Object stop = result.get("stop");
+                    if (!(fullName instanceof String) || !(start instanceof Number) || !(stop instanceof Number)) {
+                        return;
+                    }
+                    long millis = ((Number) stop).longValue() - ((Number) start).longValue();
+                    List<Map<String, Object>> params = (List<Map<String, Object>>) result.get("parameters");
+                    String row = params != null && !params.isEmpty()
+                            ? ROW + fullName + "." + rowKey(params.stream().map(p -> p.get("value")).toArray()) : null;
+                    Object historyId = result.get("historyId");
+                    String invocation = historyId instanceof String ? (String) historyId : row != null ? row : (String) fullName;
+                    long[] entry = {((Number) stop).longValue(), millis};
+                    if (newest.merge(invocation, entry, (a, b) -> a[0] >= b[0] ? a : b) == entry) {
+                        methods.put(invocation, (String) fullName);
+                        if (row != null) {
+                            rows.put(invocation, row);
+                        }
+                    }
+                } catch (Exception e) {
+                    logger.debug("Skipping unreadable Allure result {}: {}", file, e.getMessage());
+                }
+            });
+        } catch (IOException e) {
+            logger.warn("Could not read Allure results from {}: {}", ALLURE_RESULTS, e.getMessage());
+        }
+        Map<String, Long> totals = new TreeMap<>();
+        Map<String, Long> counts = new TreeMap<>();
+        newest.forEach((invocation, entry) -> {
+            String method = methods.get(invocation);
+            totals.merge(method, entry[1], Long::sum);
+            counts.merge(method, 1L, Long::sum);
+            String row = rows.get(invocation);
+            if (row != null) {
+                known.put(row, entry[1]);
+            }
+        });
+        totals.forEach((method, total) -> {
+            known.put(METHOD + method, total / counts.get(method));
+            known.put(TOTAL + method, total);
+        });
+    }
+}
@@ -1,27 +1,56 @@
 package pages;
 
 import org.openqa.selenium.By;
+import org.openqa.selenium.TimeoutException;
 import org.openqa.selenium.WebDriver;
+import utils.ElementQuery;
+import utils.PageTimings;
 import utils.WaitHelper;
 
+import java.time.Duration;
+import java.util.Map;
+
 public class HomePage {
     private WebDriver driver;
     private WaitHelper wait;
+    private ElementQuery query;
+    private PageTimings timings;
 
     private By accountText = By.xpath("//h2[text()='My Account']");
     private By logoutBtn   = By.xpath("//a[text()='Logout']");
 
     public HomePage(WebDriver driver) {
         this.driver = driver;
-        this.wait = new WaitHelper(driver, 10);
+        this.wait = new WaitHelper(driver);
+        this.query = new ElementQuery(driver);
+        this.timings = new PageTimings(driver);
     }
 
     public boolean isMyAccountVisible() {
-        return wait.waitForElementVisible(accountText).isDisplayed();
+        return wait.waitUntil(d -> query.anyVisible(accountText));
+    }
+
+    // Checks the page as loaded right now, without waiting; for telling an account page from a login redirect
+    public boolean isLoggedIn() {
+        return query.anyVisible(accountText);
+    }
+
+    // Like isLoggedIn, but gives a page that may still be loading (pageLoadStrategy=none) a short while to render
+    public boolean isLoggedIn(Duration within) {
+        try {
+            return new WaitHelper(driver, within).waitUntil(d -> query.anyVisible(accountText));
+        } catch (TimeoutException e) {
+            return false;
+        }
     }
 
     public boolean isLogoutVisible() {
-        return wait.waitForElementVisible(logoutBtn).isDisplayed();
+        return wait.waitUntil(d -> query.anyVisible(logoutBtn));
+    }
+
+    // Checks how fast the account page loaded against the "account" budgets in config.properties
+    public Map<String, Long> checkLoadBudget() {
+        return timings.record("account");
     }
 
     public String getPageTitle() {
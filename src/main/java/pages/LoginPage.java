@@ -2,12 +2,13 @@ package pages;
 
 import org.openqa.selenium.By;
 import org.openqa.selenium.WebDriver;
+import utils.ElementQuery;
 import utils.WaitHelper;
 
 public class LoginPage {
-    @SuppressWarnings("unused")
-	private WebDriver driver;
+    private WebDriver driver;
     private WaitHelper wait;
+    private ElementQuery query;
 
     private By emailField = By.name("email");  
     private By passwordField = By.name("password");  
@@ -16,7 +17,8 @@ public class LoginPage {
 
     public LoginPage(WebDriver driver) {
         this.driver = driver;
-        this.wait = new WaitHelper(driver, 10); // 10 seconds wait
+        this.wait = new WaitHelper(driver);
+        this.query = new ElementQuery(driver);
     }
 
     public void enterEmail(String email) {
@@ -33,15 +35,19 @@ public class LoginPage {
 
     public String getErrorMessage() {
         try {
-            return wait.waitForElementVisible(errorMsg).getText();
+            return wait.waitUntil(d -> query.firstVisibleText(errorMsg));
         } catch (Exception e) {
             return "";
         }
     }
 
+    /**
+     * Waits once for the whole form with a single batched check per poll, then fills it in.
+     */
     public void login(String email, String password) {
-        enterEmail(email);
-        enterPassword(password);
-        clickLogin();
+        wait.waitUntil(d -> query.allReady(emailField, passwordField, loginBtn));
+        driver.findElement(emailField).sendKeys(email);
+        driver.findElement(passwordField).sendKeys(password);
+        driver.findElement(loginBtn).click();
     }
 }
@@ -0,0 +1,309 @@
+package utils;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * One worksheet compiled into a compact columnar binary file and read through a memory-mapped {@link FileChannel}.
+ * <p>
+ * Layout (big-endian): magic "TDC1", format version, SHA-256 of the source workbook, row count,
+ * column count, one type byte per column, the string dictionary (length-prefixed UTF-8), then each
+ * column in turn: dictionary indexes (int) for text columns, doubles for numeric columns and one byte
+ * per row for boolean columns. A file whose hash no longer matches the workbook is recompiled.
+ * <p>
+ * Because the file is mapped read-only, every JVM on the machine (parallel forks, shards) shares
+ * one page-cached copy instead of each parsing Excel.
+ */
+public final class CompiledSheet {
+
+    private static final Logger logger = LogManager.getLogger(CompiledSheet.class);
+
+    private static final int MAGIC = 0x54444331; // "TDC1"
+    // 2: blank rows are kept and a sheet without a row-1 header is empty, so older files are recompiled
+    private static final short VERSION = 2;
+    private static final int HASH_BYTES = 32;
+
+    private static final byte TEXT = 0;
+    private static final byte NUMERIC = 1;
+    private static final byte BOOLEAN = 2;
+
+    public static final Path DEFAULT_OUTPUT_DIR = Paths.get(System.getProperty("testdata.compiledDir", "target/testdata-compiled"));
+
+    // Compiled file path -> open mapping, so each file is mapped and its dictionary decoded once per JVM.
+    private static final Map<Path, CompiledSheet> open = new ConcurrentHashMap<>();
+
+    private final String sourceHash;
+    private final ByteBuffer data;
+    private final int rows;
+    private final byte[] types;
+    private final int[] columnOffsets;
+    private final String[] dictionary;
+
+    private CompiledSheet(String sourceHash, ByteBuffer data, int rows, byte[] types, int[] columnOffsets, String[] dictionary) {
+        this.sourceHash = sourceHash;
+        this.data = data;
+        this.rows = rows;
+        this.types = types;
+        this.columnOffsets = columnOffsets;
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * Returns the compiled form of a sheet, compiling it first when the file is missing or was built
+     * from a different version of the workbook.
+     * @param workbook The source .xlsx file.
+     * @param sheetName The sheet to read.
+     * @return The mapped sheet.
+     */
+    public static CompiledSheet forSheet(Path workbook, String sheetName) {
+        String hash = TestDataEngine.hash(workbook);
+        Path file = fileFor(DEFAULT_OUTPUT_DIR, workbook, sheetName);
+        CompiledSheet sheet = open.get(file);
+        if (sheet != null && sheet.sourceHash.equals(hash)) {
+            return sheet;
+        }
+        synchronized (CompiledSheet.class) {
+            sheet = open.get(file);
+            if (sheet == null || !sheet.sourceHash.equals(hash)) {
+                compileIfStale(workbook, sheetName, file);
+                sheet = map(file);
+                open.put(file, sheet);
+            }
+            return sheet;
+        }
+    }
+
+    /**
+     * @return The compiled file path of a sheet inside the given output directory.
+     */
+    public static Path fileFor(Path outputDir, Path workbook, String sheetName) {
+        String base = workbook.getFileName().toString().replaceFirst("\\.xlsx$", "");
+        return outputDir.resolve(base).resolve(sheetName.replaceAll("[^A-Za-z0-9_.-]", "_") + ".tdc");
+    }
+
+    /**
+     * Compiles one sheet unless the target file was already built from the current workbook content.
+     * @return true if the sheet was (re)compiled.
+     */
+    public static boolean compileIfStale(Path workbook, String sheetName, Path target) {
+        if (TestDataEngine.hash(workbook).equals(readHash(target))) {
+            return false;
+        }
+        compile(workbook, sheetName, target);
+        return true;
+    }
+
+    /**
+     * Compiles one sheet into the binary format. The file is written next to its final location and
+     * moved into place atomically, so readers in other JVMs never see a partial file.
+     */
+    public static void compile(Path workbook, String sheetName, Path target) {
+        long start = System.nanoTime();
+        String hash = TestDataEngine.hash(workbook);
+
+        List<Object[]> rowList = new ArrayList<>();
+        TestDataEngine.typedRows(workbook, sheetName).forEachRemaining(rowList::add);
+        int rowCount = rowList.size();
+        int cols = rowCount == 0 ? 0 : rowList.get(0).length;
+
+        byte[] types = new byte[cols];
+        for (int c = 0; c < cols; c++) {
+            types[c] = columnType(rowList, c);
+        }
+
+        Map<String, Integer> dictIndex = new HashMap<>();
+        List<byte[]> dict = new ArrayList<>();
+        int dictBytes = 0;
+        for (int c = 0; c < cols; c++) {
+            if (types[c] != TEXT) {
+                continue;
+            }
+            for (Object[] row : rowList) {
+                String text = (String) TestDataEngine.asText(row[c]);
+                if (!dictIndex.containsKey(text)) {
+                    byte[] utf8 = text.getBytes(StandardCharsets.UTF_8);
+                    dictIndex.put(text, dict.size());
+                    dict.add(utf8);
+                    dictBytes += 4 + utf8.length;
+                }
+            }
+        }
+
+        int size = 4 + 2 + HASH_BYTES + 4 + 4 + cols + 4 + dictBytes;
+        for (byte type : types) {
+            size += rowCount * width(type);
+        }
+
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.putInt(MAGIC).putShort(VERSION).put(HexFormat.of().parseHex(hash)).putInt(rowCount).putInt(cols).put(types);
+        out.putInt(dict.size());
+        for (byte[] utf8 : dict) {
+            out.putInt(utf8.length).put(utf8);
+        }
+        for (int c = 0; c < cols; c++) {
+            for (Object[] row : rowList) {
+                switch (types[c]) {
+                    case NUMERIC -> out.putDouble((Double) row[c]);
+                    case BOOLEAN -> out.put((byte) (((Boolean) row[c]) ? 1 : 0));
+                    default -> out.putInt(dictIndex.get((String) TestDataEngine.asText(row[c])));
+                }
+            }
+        }
+        out.flip();
+
+        try {
+            Files.createDirectories(target.getParent());
+            Path tmp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.WRITE)) {
+                while (out.hasRemaining()) {
+                    channel.write(out);
+                }
+            }
+            Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        logger.info("Compiled sheet '{}' ({} rows x {} cols, {} dictionary entries, {} bytes) to {} in {} ms",
+                sheetName, rowCount, cols, dict.size(), size, target, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    public int getRowCount() {
+        return rows;
+    }
+
+    /**
+     * @return The rows with every value as text, exactly as {@link ExcelUtil} has always returned them.
+     */
+    public Iterator<Object[]> rows() {
+        return new Iterator<>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < rows;
+            }
+
+            @Override
+            public Object[] next() {
+                if (next >= rows) {
+                    throw new NoSuchElementException();
+                }
+                return row(next++);
+            }
+        };
+    }
+
+    /**
+     * @return All rows as text.
+     */
+    public Object[][] toArray() {
+        Object[][] all = new Object[rows][];
+        for (int r = 0; r < rows; r++) {
+            all[r] = row(r);
+        }
+        return all;
+    }
+
+    // Absolute reads only, so many threads can share the one mapped buffer.
+    private Object[] row(int r) {
+        Object[] row = new Object[types.length];
+        for (int c = 0; c < types.length; c++) {
+            int at = columnOffsets[c] + r * width(types[c]);
+            row[c] = switch (types[c]) {
+                case NUMERIC -> String.valueOf(data.getDouble(at));
+                case BOOLEAN -> String.valueOf(data.get(at) != 0);
+                default -> dictionary[data.getInt(at)];
+            };
+        }
+        return row;
+    }
+
+    private static byte columnType(List<Object[]> rowList, int column) {
+        boolean allNumbers = true;
+        boolean allBooleans = true;
+        for (Object[] row : rowList) {
+            allNumbers &= row[column] instanceof Double;
+            allBooleans &= row[column] instanceof Boolean;
+        }
+        return allNumbers ? NUMERIC : allBooleans ? BOOLEAN : TEXT;
+    }
+
+    private static int width(byte type) {
+        return type == NUMERIC ? 8 : type == BOOLEAN ? 1 : 4;
+    }
+
+    // Reads only the header of a compiled file; null when it is missing or not in this format.
+    private static String readHash(Path file) {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(4 + 2 + HASH_BYTES);
+            while (header.hasRemaining() && channel.read(header) > 0) {
+                // keep reading until the header is complete or the file ends
+            }
+            header.flip();
+            if (header.remaining() < header.capacity() || header.getInt() != MAGIC || header.getShort() != VERSION) {
+                return null;
+            }
+            byte[] hash = new byte[HASH_BYTES];
+            header.get(hash);
+            return HexFormat.of().formatHex(hash);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static CompiledSheet map(Path file) {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed.
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            ByteBuffer in = data.duplicate();
+            in.getInt();
+            in.getShort();
+            byte[] hash = new byte[HASH_BYTES];
+            in.get(hash);
+            int rows = in.getInt();
+            int cols = in.getInt();
+            byte[] types = new byte[cols];
+            in.get(types);
+
+            String[] dictionary = new String[in.getInt()];
+            for (int i = 0; i < dictionary.length; i++) {
+                byte[] utf8 = new byte[in.getInt()];
+                in.get(utf8);
+                dictionary[i] = new String(utf8, StandardCharsets.UTF_8);
+            }
+
+            int[] offsets = new int[cols];
+            int offset = in.position();
+            for (int c = 0; c < cols; c++) {
+                offsets[c] = offset;
+                offset += rows * width(types[c]);
+            }
+            return new CompiledSheet(HexFormat.of().formatHex(hash), data, rows, types, offsets, dictionary);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,393 @@
+package utils;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.time.Duration;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The suite configuration: loaded once per JVM into an immutable snapshot that any thread can read
+ * without locking.
+ * <p>
+ * Layers, each overriding the one before:
+ * <ol>
+ *     <li>{@code config.properties} from the class path, or {@code src/test/resources/config.properties}
+ *     when it is not on the class path;</li>
+ *     <li>{@code config-<env>.properties} next to it, where env is {@code -Denv}, {@code SUITE_ENV} or
+ *     the {@code env} key of the first layer (optional);</li>
+ *     <li>environment variables named after a key with a {@code SUITE_} prefix, e.g. {@code SUITE_BASE_URL}
+ *     for {@code baseUrl} or {@code SUITE_WAIT_MODE} for {@code wait.mode} (keys of the files only);</li>
+ *     <li>system properties ({@code -Dkey=value});</li>
+ *     <li>values set at runtime with {@link #override(String, String)}.</li>
+ * </ol>
+ * With {@code config.watch=true} the files are watched and a changed file replaces the snapshot;
+ * readers keep using the one they hold until they call {@link #get()} again. Values a class has
+ * already copied into a static field are not affected.
+ */
+public final class Config {
+
+    private static final Logger logger = LogManager.getLogger(Config.class);
+
+    public static final String RESOURCE = "config.properties";
+    private static final String ENV_PREFIX = "SUITE_";
+
+    private static volatile Config current;
+
+    // Runtime overrides; kept across reloads.
+    private static final Map<String, String> overrides = new ConcurrentHashMap<>();
+
+    private final Map<String, String> values;
+    private final List<Path> files;
+
+    private Config(Map<String, String> values, List<Path> files) {
+        this.values = Collections.unmodifiableMap(values);
+        this.files = List.copyOf(files);
+    }
+
+    /**
+     * @return The current snapshot, loaded on first use.
+     */
+    public static Config get() {
+        Config config = current;
+        if (config == null) {
+            synchronized (Config.class) {
+                if (current == null) {
+                    current = load(null);
+                    if (current.getBoolean("config.watch", false)) {
+                        watch(current.files);
+                    }
+                }
+                config = current;
+            }
+        }
+        return config;
+    }
+
+    /**
+     * Loads a configuration with the same layers as the shared one, but based on the given file
+     * instead of config.properties. It is not shared and never reloaded.
+     */
+    public static Config load(Path file) {
+        Map<String, String> systemProperties = new HashMap<>();
+        for (String key : System.getProperties().stringPropertyNames()) {
+            systemProperties.put(key, System.getProperty(key));
+        }
+        return load(file, System.getenv(), systemProperties, overrides);
+    }
+
+    /**
+     * Loads a configuration from the given file (config.properties when null) with the given
+     * environment and system properties as its upper layers instead of the process's own, and
+     * without runtime overrides. Nothing global is read or changed beyond the files.
+     */
+    public static Config load(Path file, Map<String, String> environment, Map<String, String> systemProperties) {
+        return load(file, environment, systemProperties, Map.of());
+    }
+
+    private static Config load(Path file, Map<String, String> environment, Map<String, String> systemProperties,
+                               Map<String, String> runtimeOverrides) {
+        Map<String, String> values = new HashMap<>();
+        List<Path> files = new ArrayList<>();
+
+        if (file != null) {
+            read(file, values, files);
+        } else {
+            URL resource = Config.class.getClassLoader().getResource(RESOURCE);
+            Path fallback = Paths.get(ConfigReader.DEFAULT_CONFIG_PATH);
+            if (resource != null) {
+                read(resource, values, files);
+            } else if (Files.isRegularFile(fallback)) {
+                read(fallback, values, files);
+            } else {
+                logger.warn("No {} on the class path or at {}; using only environment and system properties",
+                        RESOURCE, fallback.toAbsolutePath());
+            }
+        }
+
+        String env = firstNonBlank(systemProperties.get("env"), environment.get(ENV_PREFIX + "ENV"), values.get("env"));
+        if (env != null) {
+            String envFile = "config-" + env.trim() + ".properties";
+            if (!files.isEmpty() && Files.isRegularFile(files.get(0).resolveSibling(envFile))) {
+                read(files.get(0).resolveSibling(envFile), values, files);
+            } else if (file == null && Config.class.getClassLoader().getResource(envFile) != null) {
+                read(Config.class.getClassLoader().getResource(envFile), values, files);
+            }
+        }
+
+        for (String key : new ArrayList<>(values.keySet())) {
+            String value = environment.get(envVariable(key));
+            if (value != null) {
+                values.put(key, value);
+            }
+        }
+        values.putAll(systemProperties);
+        values.putAll(runtimeOverrides);
+        return new Config(values, files);
+    }
+
+    /**
+     * Sets a value for the rest of the run, e.g. a URL only known once a server has started.
+     * Readers see it from their next {@link #get()}.
+     */
+    public static void override(String key, String value) {
+        synchronized (Config.class) {
+            overrides.put(key, value);
+            current = get().with(key, value);
+        }
+    }
+
+    /**
+     * Reads the files again and replaces the shared snapshot. Runs under the same lock as
+     * {@link #override(String, String)}, so an override set meanwhile is never lost.
+     */
+    public static void reload() {
+        Config reloaded;
+        synchronized (Config.class) {
+            reloaded = load(null);
+            current = reloaded;
+        }
+        logger.info("Configuration reloaded from {}", reloaded.files);
+    }
+
+    /**
+     * @return A copy of this snapshot with one more value; this one is unchanged.
+     */
+    public Config with(String key, String value) {
+        Map<String, String> copy = new HashMap<>(values);
+        copy.put(key, value);
+        return new Config(copy, files);
+    }
+
+    /**
+     * @return The value, or null when no layer sets it.
+     */
+    public String getString(String key) {
+        return values.get(key);
+    }
+
+    /**
+     * @return The value, or the default when no layer sets it. A blank value is returned as is.
+     */
+    public String getString(String key, String defaultValue) {
+        return values.getOrDefault(key, defaultValue);
+    }
+
+    /**
+     * @return The value as an int, or the default when it is missing or blank.
+     * @throws IllegalArgumentException When the value is not an integer.
+     */
+    public int getInt(String key, int defaultValue) {
+        String value = trimmed(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw invalid(key, value, "an integer");
+        }
+    }
+
+    /**
+     * @return The value as a long, or the default when it is missing or blank.
+     * @throws IllegalArgumentException When the value is not an integer.
+     */
+    public long getLong(String key, long defaultValue) {
+        String value = trimmed(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw invalid(key, value, "an integer");
+        }
+    }
+
+    /**
+     * @return The value as a double, or the default when it is missing or blank.
+     * @throws IllegalArgumentException When the value is not a number.
+     */
+    public double getDouble(String key, double defaultValue) {
+        String value = trimmed(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(value);
+        } catch (NumberFormatException e) {
+            throw invalid(key, value, "a number");
+        }
+    }
+
+    /**
+     * @return The value as a boolean, or the default when it is missing or blank.
+     * @throws IllegalArgumentException When the value is neither "true" nor "false".
+     */
+    public boolean getBoolean(String key, boolean defaultValue) {
+        String value = trimmed(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        if (value.equalsIgnoreCase("true") || value.equalsIgnoreCase("false")) {
+            return Boolean.parseBoolean(value);
+        }
+        throw invalid(key, value, "true or false");
+    }
+
+    /**
+     * Reads a duration written as "500ms", "10s", "5m", "2h", an ISO-8601 value such as "PT10S",
+     * or a bare number of seconds.
+     * @return The value, or the default when it is missing or blank.
+     * @throws IllegalArgumentException When the value is not a duration.
+     */
+    public Duration getDuration(String key, Duration defaultValue) {
+        String value = trimmed(key);
+        if (value == null) {
+            return defaultValue;
+        }
+        String lower = value.toLowerCase(Locale.ROOT);
+        try {
+            if (lower.startsWith("p")) {
+                return Duration.parse(value);
+            }
+            if (lower.endsWith("ms")) {
+                return Duration.ofMillis(Long.parseLong(lower.substring(0, lower.length() - 2).trim()));
+            }
+            long amount = Long.parseLong(lower.replaceAll("[smh]$", "").trim());
+            switch (lower.charAt(lower.length() - 1)) {
+                case 'm':
+                    return Duration.ofMinutes(amount);
+                case 'h':
+                    return Duration.ofHours(amount);
+                default:
+                    return Duration.ofSeconds(amount);
+            }
+        } catch (NumberFormatException | DateTimeParseException e) {
+            throw invalid(key, value, "a duration such as 500ms, 10s, 5m or PT10S");
+        }
+    }
+
+    private String trimmed(String key) {
+        String value = values.get(key);
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+
+    private static IllegalArgumentException invalid(String key, String value, String expected) {
+        return new IllegalArgumentException("Config key '" + key + "' must be " + expected + " but was '" + value + "'");
+    }
+
+    // baseUrl -> SUITE_BASE_URL, wait.mode -> SUITE_WAIT_MODE
+    static String envVariable(String key) {
+        return ENV_PREFIX + key.replaceAll("([a-z0-9])([A-Z])", "$1_$2").replaceAll("[^A-Za-z0-9]", "_").toUpperCase(Locale.ROOT);
+    }
+
+    private static String firstNonBlank(String... values) {
+        for (String value : values) {
+            if (value != null && !value.isBlank()) {
+                return value;
+            }
+        }
+        return null;
+    }
+
+    private static void read(URL resource, Map<String, String> values, List<Path> files) {
+        if ("file".equals(resource.getProtocol())) {
+            try {
+                read(Paths.get(resource.toURI()), values, files);
+                return;
+            } catch (URISyntaxException e) {
+                // read it as a stream below
+            }
+        }
+        try (InputStream in = resource.openStream()) {
+            load(in, values);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read " + resource, e);
+        }
+    }
+
+    private static void read(Path file, Map<String, String> values, List<Path> files) {
+        try (InputStream in = Files.newInputStream(file)) {
+            load(in, values);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read config file " + file.toAbsolutePath(), e);
+        }
+        files.add(file.toAbsolutePath());
+    }
+
+    private static void load(InputStream in, Map<String, String> values) throws IOException {
+        Properties properties = new Properties();
+        properties.load(in);
+        for (String key : properties.stringPropertyNames()) {
+            values.put(key, properties.getProperty(key));
+        }
+    }
+
+    // Reloads when one of the files changes; runs on a daemon thread so readers never wait for it.
+    private static void watch(List<Path> files) {
+        if (files.isEmpty()) {
+            return;
+        }
+        Thread watcher = new Thread(() -> {
+            try (WatchService service = FileSystems.getDefault().newWatchService()) {
+                Set<Path> directories = new HashSet<>();
+                Set<Path> names = new HashSet<>();
+                for (Path file : files) {
+                    names.add(file.getFileName());
+                    if (directories.add(file.getParent())) {
+                        file.getParent().register(service, StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_CREATE);
+                    }
+                }
+                while (true) {
+                    WatchKey key = service.take();
+                    boolean changed = false;
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        changed |= event.context() instanceof Path && names.contains((Path) event.context());
+                    }
+                    key.reset();
+                    if (changed) {
+                        Thread.sleep(100); // editors often write a file in several steps
+                        try {
+                            reload();
+                        } catch (RuntimeException e) {
+                            logger.warn("Keeping the previous configuration, reload failed: {}", e.getMessage());
+                        }
+                    }
+                }
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                logger.warn("Cannot watch config files for changes: {}", e.getMessage());
+            }
+        }, "config-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        logger.info("Watching {} for changes", files);
+    }
+}
@@ -1,22 +1,35 @@
 package utils;
 
-import java.io.FileInputStream;
-import java.io.IOException;
-import java.util.Properties;
+import java.nio.file.Paths;
 
+/**
+ * String view of the configuration, kept for existing callers; new code should use {@link Config}.
+ * For the default path it reads the shared {@link Config} snapshot, so creating one reads no file.
+ * Any other path is loaded once, with the same environment and system-property layers on top.
+ */
 public class ConfigReader {
-    private Properties properties;
+    public static final String DEFAULT_CONFIG_PATH = "src/test/resources/config.properties";
+
+    // null: read through to the shared snapshot, so runtime overrides and reloads are seen.
+    private final Config own;
 
     public ConfigReader(String filePath) {
-        properties = new Properties();
-        try (FileInputStream fis = new FileInputStream(filePath)) {
-            properties.load(fis);
-        } catch (IOException e) {
-            e.printStackTrace();
-        }
+        own = DEFAULT_CONFIG_PATH.equals(filePath) ? null : Config.load(Paths.get(filePath));
+    }
+
+    private Config config() {
+        return own != null ? own : Config.get();
     }
 
+    /**
+     * A system property of the same name (-Dkey=value) takes precedence over the file,
+     * so a single run can point the suite elsewhere without editing config.properties.
+     */
     public String getProperty(String key) {
-        return properties.getProperty(key);
+        return config().getString(key);
+    }
+
+    public String getProperty(String key, String defaultValue) {
+        return config().getString(key, defaultValue);
     }
 }
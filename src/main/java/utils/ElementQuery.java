@@ -0,0 +1,236 @@
+package utils;
+
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptException;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.UnsupportedCommandException;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebElement;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads text, visibility and attributes of every element matching a locator in one
+ * {@code executeScript} round trip, instead of findElements plus one call per element and property.
+ * <p>
+ * If the driver does not support script execution, queries fall back to plain per-element WebDriver calls
+ * from then on. A script that merely fails, for example because the page navigated mid-call, is answered
+ * through the same fallback for that one call, so real locator errors still surface from findElements.
+ */
+public class ElementQuery {
+
+    /**
+     * Script prelude defining {@code findAll(using, value)}, which resolves the strategy and value of a
+     * {@link By.Remotable} in the page, and {@code isVisible(el)}, which approximates WebDriver's isDisplayed.
+     */
+    static final String FIND_ELEMENTS_JS =
+            "function findAll(using, value) {"
+            + "  switch (using) {"
+            + "    case 'css selector': return Array.from(document.querySelectorAll(value));"
+            + "    case 'tag name': return Array.from(document.getElementsByTagName(value));"
+            + "    case 'xpath': {"
+            + "      var r = document.evaluate(value, document, null, XPathResult.ORDERED_NODE_SNAPSHOT_TYPE, null);"
+            + "      var out = [];"
+            + "      for (var i = 0; i < r.snapshotLength; i++) { out.push(r.snapshotItem(i)); }"
+            + "      return out;"
+            + "    }"
+            + "    case 'link text': return Array.from(document.querySelectorAll('a')).filter(function (a) { return a.innerText.trim() === value; });"
+            + "    case 'partial link text': return Array.from(document.querySelectorAll('a')).filter(function (a) { return a.innerText.indexOf(value) >= 0; });"
+            + "    default: throw new Error('Unsupported locator strategy: ' + using);"
+            + "  }"
+            + "}"
+            + "function isVisible(el) {"
+            + "  if (el.checkVisibility) { return el.checkVisibility({opacityProperty: true, visibilityProperty: true}); }"
+            + "  var style = window.getComputedStyle(el);"
+            + "  return style.display !== 'none' && style.visibility !== 'hidden' && parseFloat(style.opacity) > 0"
+            + "      && el.getClientRects().length > 0;"
+            + "}";
+
+    private static final String QUERY_JS = FIND_ELEMENTS_JS
+            + "var attrs = arguments[2];"
+            + "return findAll(arguments[0], arguments[1]).map(function (el) {"
+            + "  var visible = isVisible(el);"
+            + "  var values = {};"
+            + "  attrs.forEach(function (name) { values[name] = el.getAttribute(name); });"
+            + "  return {text: visible ? el.innerText.trim() : '', visible: visible, attributes: values};"
+            + "});";
+
+    private static final String READY_JS = FIND_ELEMENTS_JS
+            + "return arguments[0].every(function (locator) {"
+            + "  return findAll(locator[0], locator[1]).some(function (el) { return isVisible(el) && !el.disabled; });"
+            + "});";
+
+    private final WebDriver driver;
+
+    // Flipped to false the first time the driver rejects the command, so later queries go straight to the fallback.
+    // Script errors do not flip it: those say something about the page at that moment, not about the driver.
+    private boolean scriptingAvailable;
+
+    public ElementQuery(WebDriver driver) {
+        this.driver = driver;
+        this.scriptingAvailable = driver instanceof JavascriptExecutor;
+    }
+
+    /**
+     * A point-in-time view of one matched element.
+     */
+    public static class ElementSnapshot {
+        private final String text;
+        private final boolean visible;
+        private final Map<String, String> attributes;
+
+        ElementSnapshot(String text, boolean visible, Map<String, String> attributes) {
+            this.text = text;
+            this.visible = visible;
+            this.attributes = attributes;
+        }
+
+        public String getText() {
+            return text;
+        }
+
+        public boolean isVisible() {
+            return visible;
+        }
+
+        public String getAttribute(String name) {
+            return attributes.get(name);
+        }
+    }
+
+    /**
+     * Returns a snapshot of every element matching the locator, in document order.
+     * @param locator The elements to read.
+     * @param attributes Attribute names to read from each element.
+     * @return One snapshot per matched element; empty when nothing matches.
+     */
+    @SuppressWarnings("unchecked")
+    public List<ElementSnapshot> query(By locator, String... attributes) {
+        if (scriptingAvailable && locator instanceof By.Remotable) {
+            By.Remotable.Parameters params = ((By.Remotable) locator).getRemoteParameters();
+            try {
+                Object result = ((JavascriptExecutor) driver).executeScript(QUERY_JS,
+                        params.using(), String.valueOf(params.value()), List.of(attributes));
+                List<ElementSnapshot> snapshots = new ArrayList<>();
+                for (Map<String, Object> item : (List<Map<String, Object>>) result) {
+                    Map<String, String> values = new LinkedHashMap<>();
+                    ((Map<String, Object>) item.get("attributes")).forEach((k, v) -> values.put(k, v == null ? null : v.toString()));
+                    snapshots.add(new ElementSnapshot((String) item.get("text"), Boolean.TRUE.equals(item.get("visible")), values));
+                }
+                return snapshots;
+            } catch (UnsupportedCommandException e) {
+                scriptingAvailable = false;
+            } catch (JavascriptException e) {
+                // Retried below through WebDriver for this call only
+            }
+        }
+        return queryPerElement(locator, attributes);
+    }
+
+    /**
+     * Checks several locators in one round trip, e.g. every field of a form before filling it in.
+     * @param locators The elements that must be ready.
+     * @return true if every locator has at least one displayed, enabled match.
+     */
+    public boolean allReady(By... locators) {
+        if (scriptingAvailable && allRemotable(locators)) {
+            List<List<String>> params = new ArrayList<>();
+            for (By locator : locators) {
+                By.Remotable.Parameters p = ((By.Remotable) locator).getRemoteParameters();
+                params.add(List.of(p.using(), String.valueOf(p.value())));
+            }
+            try {
+                return Boolean.TRUE.equals(((JavascriptExecutor) driver).executeScript(READY_JS, params));
+            } catch (UnsupportedCommandException e) {
+                scriptingAvailable = false;
+            } catch (JavascriptException e) {
+                // Retried below through WebDriver for this call only
+            }
+        }
+        for (By locator : locators) {
+            if (driver.findElements(locator).stream().noneMatch(e -> e.isDisplayed() && e.isEnabled())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The visible text of every matching element, in document order.
+     */
+    public List<String> texts(By locator) {
+        List<String> texts = new ArrayList<>();
+        for (ElementSnapshot snapshot : query(locator)) {
+            texts.add(snapshot.getText());
+        }
+        return texts;
+    }
+
+    /**
+     * @return The text of every displayed matching element, in document order.
+     */
+    public List<String> visibleTexts(By locator) {
+        List<String> texts = new ArrayList<>();
+        for (ElementSnapshot snapshot : query(locator)) {
+            if (snapshot.isVisible()) {
+                texts.add(snapshot.getText());
+            }
+        }
+        return texts;
+    }
+
+    /**
+     * @return true if at least one matching element is displayed.
+     */
+    public boolean anyVisible(By locator) {
+        for (ElementSnapshot snapshot : query(locator)) {
+            if (snapshot.isVisible()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return The text of the first displayed matching element, or null if none is displayed yet.
+     */
+    public String firstVisibleText(By locator) {
+        for (ElementSnapshot snapshot : query(locator)) {
+            if (snapshot.isVisible()) {
+                return snapshot.getText();
+            }
+        }
+        return null;
+    }
+
+    private static boolean allRemotable(By... locators) {
+        for (By locator : locators) {
+            if (!(locator instanceof By.Remotable)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // The classic N+1 path, used when the driver will not run scripts or a script failed.
+    private List<ElementSnapshot> queryPerElement(By locator, String... attributes) {
+        List<WebElement> elements = driver.findElements(locator);
+        if (elements.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<ElementSnapshot> snapshots = new ArrayList<>();
+        for (WebElement element : elements) {
+            Map<String, String> values = new LinkedHashMap<>();
+            for (String name : attributes) {
+                values.put(name, element.getDomAttribute(name));
+            }
+            boolean visible = element.isDisplayed();
+            snapshots.add(new ElementSnapshot(visible ? element.getText().trim() : "", visible, values));
+        }
+        return snapshots;
+    }
+}
@@ -1,64 +1,71 @@
 package utils;
 
-import org.apache.poi.ss.usermodel.*;
-import java.io.InputStream;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.file.Path;
 import java.util.*;
 
 public class ExcelUtil {
 
-    public static Object[][] getSheetData(String sheetName) {
-        try (InputStream is = ExcelUtil.class.getClassLoader().getResourceAsStream("testdata.xlsx")) {
-
-            if (is == null) {
-                System.err.println("testdata.xlsx not found in resources!");
-                return new Object[0][];
-            }
-
-            Workbook wb = WorkbookFactory.create(is);
-            Sheet sh = wb.getSheet(sheetName);
-            if (sh == null) {
-                System.err.println("Sheet '" + sheetName + "' not found.");
-                wb.close();
-                return new Object[0][];
-            }
-
-            int rows = sh.getPhysicalNumberOfRows();
-            if (rows < 2) { // no data rows
-                wb.close();
-                return new Object[0][];
-            }
+    private static final Logger logger = LogManager.getLogger(ExcelUtil.class);
 
-            int cols = sh.getRow(0).getLastCellNum();
-            List<Object[]> data = new ArrayList<>();
-            FormulaEvaluator evaluator = wb.getCreationHelper().createFormulaEvaluator();
+    private static final String TEST_DATA_FILE = "testdata.xlsx";
 
-            for (int r = 1; r < rows; r++) { // skip header
-                Row row = sh.getRow(r);
-                if (row == null) continue;
+    // Set -Dtestdata.compiled=false to always read the workbook itself instead of the compiled sheets.
+    private static final boolean USE_COMPILED = Boolean.parseBoolean(System.getProperty("testdata.compiled", "true"));
 
-                Object[] rowData = new Object[cols];
-                for (int c = 0; c < cols; c++) {
-                    Cell cell = row.getCell(c, Row.MissingCellPolicy.CREATE_NULL_AS_BLANK);
-                    CellValue cellValue = evaluator.evaluate(cell);
-
-                    rowData[c] = switch (cellValue.getCellType()) {
-                        case STRING -> cellValue.getStringValue();
-                        case NUMERIC -> String.valueOf(cellValue.getNumberValue());
-                        case BOOLEAN -> String.valueOf(cellValue.getBooleanValue());
-                        case BLANK -> "";
-                        case ERROR -> "ERROR";
-                        default -> "";
-                    };
-                }
-                data.add(rowData);
-            }
+    /**
+     * Reads a whole sheet of testdata.xlsx, skipping the header row.
+     * The compiled form of the sheet is preferred; otherwise the workbook is parsed once per JVM
+     * and the sheet is cached, so repeated calls are cheap.
+     */
+    public static Object[][] getSheetData(String sheetName) {
+        try {
+            CompiledSheet compiled = compiled(sheetName);
+            return compiled != null ? compiled.toArray() : TestDataEngine.sheet(testDataFile(), sheetName);
+        } catch (Exception e) {
+            logger.error("Could not read sheet '{}' from {}: {}", sheetName, TEST_DATA_FILE, e.getMessage());
+            return new Object[0][];
+        }
+    }
 
-            wb.close();
-            return data.toArray(new Object[0][]);
+    /**
+     * Streams the rows of a sheet of testdata.xlsx, skipping the header row.
+     * Suited to large sheets: TestNG pulls one row at a time and the sheet is never fully in memory.
+     */
+    public static Iterator<Object[]> getSheetRows(String sheetName) {
+        try {
+            CompiledSheet compiled = compiled(sheetName);
+            return compiled != null ? compiled.rows() : TestDataEngine.textRows(testDataFile(), sheetName);
+        } catch (Exception e) {
+            logger.error("Could not read sheet '{}' from {}: {}", sheetName, TEST_DATA_FILE, e.getMessage());
+            return Collections.emptyIterator();
+        }
+    }
 
+    /**
+     * Returns the memory-mapped compiled sheet, compiling it if it is missing or stale.
+     * Falls back to null (read the workbook directly) when compiled data is disabled or cannot be written,
+     * and when the workbook has no such sheet, which the caller then reports.
+     */
+    private static CompiledSheet compiled(String sheetName) {
+        if (!USE_COMPILED) {
+            return null;
+        }
+        Path workbook = testDataFile();
+        if (!TestDataEngine.sheetNames(workbook).contains(sheetName)) {
+            return null;
+        }
+        try {
+            return CompiledSheet.forSheet(workbook, sheetName);
         } catch (Exception e) {
-            e.printStackTrace();
-            return new Object[0][];
+            logger.warn("Compiled test data unavailable for sheet '{}', reading the workbook: {}", sheetName, e.getMessage());
+            return null;
         }
     }
+
+    private static Path testDataFile() {
+        return TestDataEngine.resource(TEST_DATA_FILE);
+    }
 }
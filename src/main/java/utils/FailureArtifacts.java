@@ -0,0 +1,241 @@
+package utils;
+
+import io.qameta.allure.Allure;
+import io.qameta.allure.AllureLifecycle;
+import io.qameta.allure.model.Attachment;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.OutputType;
+import org.openqa.selenium.TakesScreenshot;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.logging.LogEntry;
+import org.openqa.selenium.logging.LogType;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Captures a screenshot, the page source and the browser console of a failed test and attaches them
+ * to its Allure result without making the test thread wait for compression or disk I/O.
+ * <p>
+ * The test thread only fetches the raw bytes from the browser and reserves the attachments in the
+ * Allure result; a small pool of background threads writes the files. Page sources always go into the
+ * report as plain HTML so Allure can show them; large ones ({@code artifacts.compressOverKb}) also get a
+ * gzipped copy in {@code artifacts.archiveDir}, named after the attachment, for keeping beyond the report.
+ * A screenshot identical to one already captured (the same error page, say) is linked to the existing
+ * file instead of being written again. When the queue ({@code artifacts.queueCapacity}) is full the
+ * test thread writes its own artifacts, which slows it down rather than piling up memory.
+ * Call {@link #flush()} before the suite ends so every file is on disk when the report is generated.
+ */
+public final class FailureArtifacts {
+
+    private static final Logger logger = LogManager.getLogger(FailureArtifacts.class);
+
+    private static final boolean ENABLED = Config.get().getBoolean("artifacts.onFailure", true);
+    private static final int THREADS = Config.get().getInt("artifacts.threads", 2);
+    private static final int QUEUE_CAPACITY = Config.get().getInt("artifacts.queueCapacity", 16);
+    private static final int COMPRESS_OVER_BYTES = Config.get().getInt("artifacts.compressOverKb", 64) * 1024;
+    private static final String ARCHIVE_DIR = Config.get().getString("artifacts.archiveDir", "target/failure-artifacts");
+    private static final long FLUSH_TIMEOUT_SECONDS = Config.get().getLong("artifacts.flushTimeoutSeconds", 30);
+
+    private static final ThreadPoolExecutor writer = createWriter();
+
+    // Screenshot SHA-256 -> Allure source file it was (or is being) written to.
+    private static final Map<String, String> screenshots = new ConcurrentHashMap<>();
+
+    private static final AtomicLong captures = new AtomicLong();
+    private static final AtomicLong deduplicated = new AtomicLong();
+    private static final AtomicLong bytesWritten = new AtomicLong();
+    private static final AtomicLong writtenOnTestThread = new AtomicLong();
+    private static final AtomicLong maxOverheadMicros = new AtomicLong();
+
+    private FailureArtifacts() {
+    }
+
+    public static boolean isEnabled() {
+        return ENABLED;
+    }
+
+    /**
+     * Grabs the artifacts of a failed test from its browser and queues them for the Allure result of
+     * the test running on the calling thread. Never throws: a browser that has crashed simply yields
+     * fewer artifacts.
+     * @param driver The failed test's session; nothing is captured when null.
+     */
+    public static void capture(WebDriver driver) {
+        if (!ENABLED || driver == null) {
+            return;
+        }
+        captures.incrementAndGet();
+        long start = System.nanoTime();
+
+        byte[] screenshot = null;
+        if (driver instanceof TakesScreenshot) {
+            try {
+                screenshot = ((TakesScreenshot) driver).getScreenshotAs(OutputType.BYTES);
+            } catch (RuntimeException e) {
+                logger.debug("No screenshot: {}", e.getMessage());
+            }
+        }
+        String pageSource = null;
+        try {
+            pageSource = driver.getPageSource();
+        } catch (RuntimeException e) {
+            logger.debug("No page source: {}", e.getMessage());
+        }
+        String console = null;
+        try {
+            StringBuilder lines = new StringBuilder();
+            for (LogEntry entry : driver.manage().logs().get(LogType.BROWSER)) {
+                lines.append(entry).append('\n');
+            }
+            console = lines.toString();
+        } catch (RuntimeException e) {
+            logger.debug("No browser console log: {}", e.getMessage());
+        }
+        long bookkeeping = System.nanoTime();
+        AllureLifecycle lifecycle = Allure.getLifecycle();
+        if (screenshot != null) {
+            attachScreenshot(lifecycle, screenshot);
+        }
+        if (pageSource != null) {
+            byte[] html = pageSource.getBytes(StandardCharsets.UTF_8);
+            String source = lifecycle.prepareAttachment("Page source", "text/html", ".html");
+            submit(source, () -> html);
+            if (html.length > COMPRESS_OVER_BYTES && !ARCHIVE_DIR.isBlank()) {
+                archive(source + ".gz", html);
+            }
+        }
+        if (console != null && !console.isEmpty()) {
+            byte[] text = console.getBytes(StandardCharsets.UTF_8);
+            String source = lifecycle.prepareAttachment("Browser console", "text/plain", ".log");
+            submit(source, () -> text);
+        }
+        long overheadMicros = (System.nanoTime() - bookkeeping) / 1000;
+        maxOverheadMicros.accumulateAndGet(overheadMicros, Math::max);
+        logger.debug("Captured failure artifacts: {} ms waiting on the browser, {} µs queueing",
+                (bookkeeping - start) / 1_000_000, overheadMicros);
+    }
+
+    private static void attachScreenshot(AllureLifecycle lifecycle, byte[] png) {
+        boolean[] first = {false};
+        String source = screenshots.computeIfAbsent(sha256(png), hash -> {
+            first[0] = true;
+            return lifecycle.prepareAttachment("Screenshot", "image/png", ".png");
+        });
+        if (first[0]) {
+            submit(source, () -> png);
+            return;
+        }
+        deduplicated.incrementAndGet();
+        lifecycle.updateTestCase(result -> result.getAttachments().add(
+                new Attachment().setName("Screenshot").setType("image/png").setSource(source)));
+    }
+
+    private interface Content {
+        byte[] bytes();
+    }
+
+    private static void submit(String source, Content content) {
+        writer.execute(() -> {
+            try {
+                byte[] bytes = content.bytes();
+                Allure.getLifecycle().writeAttachment(source, new ByteArrayInputStream(bytes));
+                bytesWritten.addAndGet(bytes.length);
+            } catch (RuntimeException e) {
+                logger.warn("Could not write failure artifact {}: {}", source, e.getMessage());
+            }
+        });
+    }
+
+    // Writes a gzipped copy outside the Allure results; the report itself keeps the readable original.
+    private static void archive(String name, byte[] bytes) {
+        writer.execute(() -> {
+            try {
+                Path dir = Files.createDirectories(Paths.get(ARCHIVE_DIR));
+                byte[] zipped = gzip(bytes);
+                Files.write(dir.resolve(name), zipped);
+                bytesWritten.addAndGet(zipped.length);
+            } catch (IOException | RuntimeException e) {
+                logger.warn("Could not archive failure artifact {}: {}", name, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Waits for queued artifacts to be written. Artifacts captured afterwards are written on the
+     * test thread.
+     */
+    public static void flush() {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(FLUSH_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                logger.warn("Failure artifacts still being written after {} s; some attachments may be missing",
+                        FLUSH_TIMEOUT_SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static String getStats() {
+        return String.format("Failure artifacts: %d capture(s), %d duplicate screenshot(s) linked, %d KB written, "
+                        + "%d written on the test thread (queue full), max %.1f ms of test-thread overhead",
+                captures.get(), deduplicated.get(), bytesWritten.get() / 1024,
+                writtenOnTestThread.get(), maxOverheadMicros.get() / 1000.0);
+    }
+
+    private static ThreadPoolExecutor createWriter() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        int threads = Math.max(1, THREADS);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, QUEUE_CAPACITY)),
+                task -> {
+                    Thread thread = new Thread(task, "failure-artifacts-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                // Back-pressure: the submitting test thread does the work itself, also after flush()
+                (task, pool) -> {
+                    writtenOnTestThread.incrementAndGet();
+                    task.run();
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(bytes.length / 4);
+        try (GZIPOutputStream zip = new GZIPOutputStream(out)) {
+            zip.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    private static String sha256(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,388 @@
+package utils;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Build step that picks the tests a change can affect and writes them as a TestNG suite, so a pull
+ * request runs those instead of all of testng.xml.
+ * <p>
+ * Dependencies come from the sources. A class depends on every project class whose simple name it
+ * mentions, transitively: a test that uses SearchPage depends on WaitHelper through it, and every test
+ * extending BaseTest depends on DriverFactory. Every test also depends on the listeners testng.xml
+ * registers (RunCheckpoint, say), since they change how all tests run without any test naming them.
+ * A test depends on the sheets its test sources name in ExcelUtil calls, or on every sheet when they
+ * open testdata.xlsx or TestDataEngine directly.
+ * <p>
+ * The change set is {@code git diff} between the working tree and the merge base with
+ * {@code impact.baseRef}, plus untracked files. A changed class selects the tests that depend on it;
+ * a changed workbook selects the tests of the sheets whose rows differ from the base version. A change
+ * to the build or configuration (pom.xml, testng.xml, any other file under src/main or src/test)
+ * selects everything, and so does a base ref git cannot resolve. Anything else (docs, CI files,
+ * benchmarks) selects nothing. The classes in {@code impact.alwaysRun} are always included.
+ * <p>
+ * Usage: {@code ImpactAnalyzer [baseRef] [output.xml]}; defaults to impact.baseRef and
+ * target/impacted-testng.xml. The suite keeps the attributes, parameters and listeners of testng.xml,
+ * with one test per selected class.
+ */
+public class ImpactAnalyzer {
+
+    private static final Logger logger = LogManager.getLogger(ImpactAnalyzer.class);
+
+    private static final Path SUITE = Paths.get("testng.xml");
+    private static final String WORKBOOK = "src/test/resources/testdata.xlsx";
+    private static final List<String> SOURCE_ROOTS = List.of("src/main/java/", "src/test/java/");
+
+    private static final Pattern IDENTIFIER = Pattern.compile("\\b[A-Z][A-Za-z0-9_]*\\b");
+    private static final Pattern SHEET_REFERENCE = Pattern.compile("ExcelUtil\\.\\w+\\(\\s*\"([^\"]+)\"");
+    private static final Pattern ALL_SHEETS = Pattern.compile("testdata\\.xlsx|\\bTestDataEngine\\b");
+
+    // Simple class name -> source file, for every class under src/main/java and src/test/java.
+    private final Map<String, Path> sources = new HashMap<>();
+    // Simple class name -> the project classes its source mentions.
+    private final Map<String, Set<String>> references = new HashMap<>();
+
+    public static void main(String[] args) throws Exception {
+        Config config = Config.get();
+        String baseRef = args.length > 0 ? args[0] : config.getString("impact.baseRef", "origin/main");
+        Path output = Paths.get(args.length > 1 ? args[1] : "target/impacted-testng.xml");
+
+        Document suite = parse(SUITE);
+        List<String> suiteClasses = new ArrayList<>();
+        NodeList classes = suite.getElementsByTagName("class");
+        for (int i = 0; i < classes.getLength(); i++) {
+            suiteClasses.add(((Element) classes.item(i)).getAttribute("name"));
+        }
+
+        List<String> listeners = new ArrayList<>();
+        NodeList listenerElements = suite.getElementsByTagName("listener");
+        for (int i = 0; i < listenerElements.getLength(); i++) {
+            listeners.add(((Element) listenerElements.item(i)).getAttribute("class-name"));
+        }
+
+        ImpactAnalyzer analyzer = new ImpactAnalyzer();
+        analyzer.index();
+        Map<String, String> selected = analyzer.select(baseRef, suiteClasses, listeners);
+        for (String name : config.getString("impact.alwaysRun", "tests.SanityTest").split(",")) {
+            if (!name.isBlank()) {
+                selected.putIfAbsent(name.trim(), "always run");
+            }
+        }
+
+        write(suite, selected, output);
+        logger.info("{} test class(es) selected against {} ({} in testng.xml), suite written to {}",
+                selected.size(), baseRef, suiteClasses.size(), output);
+        selected.forEach((name, reason) -> logger.info("  {} <- {}", name, reason));
+    }
+
+    // Reads every project source once and records which project classes it mentions.
+    private void index() throws IOException {
+        Map<String, String> text = new HashMap<>();
+        for (String root : SOURCE_ROOTS) {
+            Path dir = Paths.get(root);
+            if (!Files.isDirectory(dir)) {
+                continue;
+            }
+            try (Stream<Path> files = Files.walk(dir)) {
+                for (Path file : files.filter(f -> f.toString().endsWith(".java")).collect(Collectors.toList())) {
+                    String name = simpleName(file.toString());
+                    sources.put(name, file);
+                    text.put(name, Files.readString(file, StandardCharsets.UTF_8));
+                }
+            }
+        }
+        text.forEach((name, source) -> {
+            // Main code cannot depend on test code, so a test class named in a main doc comment is no edge
+            boolean main = isMain(sources.get(name));
+            Set<String> mentioned = new HashSet<>();
+            Matcher m = IDENTIFIER.matcher(source);
+            while (m.find()) {
+                String other = m.group();
+                if (sources.containsKey(other) && !other.equals(name) && (!main || isMain(sources.get(other)))) {
+                    mentioned.add(other);
+                }
+            }
+            references.put(name, mentioned);
+        });
+    }
+
+    /**
+     * @return Selected class -> why, in testng.xml order.
+     */
+    private Map<String, String> select(String baseRef, List<String> suiteClasses, List<String> listeners) throws IOException {
+        Map<String, String> selected = new LinkedHashMap<>();
+        String mergeBase;
+        Set<String> changed = new LinkedHashSet<>();
+        try {
+            mergeBase = text(git("merge-base", baseRef, "HEAD")).trim();
+            changed.addAll(lines(git("diff", "--name-only", "--relative", mergeBase)));
+            changed.addAll(lines(git("ls-files", "--others", "--exclude-standard")));
+        } catch (IOException e) {
+            logger.warn("Cannot diff against {}, selecting every test: {}", baseRef, e.getMessage());
+            suiteClasses.forEach(name -> selected.put(name, "no diff against " + baseRef));
+            return selected;
+        }
+        logger.info("{} file(s) changed since {} ({})", changed.size(), baseRef, mergeBase.substring(0, Math.min(12, mergeBase.length())));
+
+        Set<String> changedClasses = new HashSet<>();
+        Set<String> changedSheets = Set.of();
+        for (String path : changed) {
+            if (path.endsWith(".java") && SOURCE_ROOTS.stream().anyMatch(path::startsWith)) {
+                changedClasses.add(simpleName(path));
+            } else if (path.equals(WORKBOOK)) {
+                changedSheets = changedSheets(mergeBase);
+                logger.info("Changed sheets: {}", changedSheets);
+            } else if (path.equals("pom.xml") || path.equals(SUITE.toString())
+                    || path.startsWith("src/main/") || path.startsWith("src/test/")) {
+                suiteClasses.forEach(name -> selected.put(name, path + " changed"));
+                return selected;
+            }
+        }
+
+        // Suite listeners run around every test without any test naming them
+        Set<String> shared = new LinkedHashSet<>();
+        for (String listener : listeners) {
+            if (sources.containsKey(simpleName(listener))) {
+                shared.addAll(closure(simpleName(listener)));
+            }
+        }
+
+        for (String name : suiteClasses) {
+            Set<String> closure = closure(simpleName(name));
+            closure.addAll(shared);
+            List<String> reasons = new ArrayList<>();
+            closure.stream().filter(changedClasses::contains).sorted().forEach(c -> reasons.add(c + ".java"));
+            Set<String> sheets = sheets(closure);
+            Set<String> affected = new TreeSet<>(changedSheets);
+            if (sheets != null) {
+                affected.retainAll(sheets);
+            }
+            if (!affected.isEmpty()) {
+                reasons.add("sheets " + affected);
+            }
+            if (!reasons.isEmpty()) {
+                selected.put(name, String.join(", ", reasons) + " changed");
+            }
+        }
+        return selected;
+    }
+
+    // The class and every project class it reaches through the classes it mentions.
+    private Set<String> closure(String name) {
+        Set<String> seen = new LinkedHashSet<>();
+        Deque<String> todo = new ArrayDeque<>(List.of(name));
+        while (!todo.isEmpty()) {
+            String next = todo.pop();
+            if (seen.add(next)) {
+                todo.addAll(references.getOrDefault(next, Set.of()));
+            }
+        }
+        return seen;
+    }
+
+    /**
+     * Sheets named by the test sources among the given classes. Main classes are left out: the sheets
+     * they read (the local storefront's fixtures, say) do not decide which rows a test runs.
+     * @return The sheet names, or null when the tests read the workbook without naming sheets.
+     */
+    private Set<String> sheets(Set<String> classes) throws IOException {
+        Set<String> sheets = new HashSet<>();
+        for (String name : classes) {
+            Path file = sources.get(name);
+            if (file == null || !file.toString().replace('\\', '/').startsWith("src/test/java/")) {
+                continue;
+            }
+            String source = Files.readString(file, StandardCharsets.UTF_8);
+            if (ALL_SHEETS.matcher(source).find()) {
+                return null;
+            }
+            Matcher m = SHEET_REFERENCE.matcher(source);
+            while (m.find()) {
+                sheets.add(m.group(1));
+            }
+        }
+        return sheets;
+    }
+
+    // Sheets whose rows differ between the workbook at the merge base and the working tree.
+    private static Set<String> changedSheets(String mergeBase) throws IOException {
+        Map<String, String> current = sheetHashes(Paths.get(WORKBOOK));
+        Map<String, String> base = baseSheetHashes(mergeBase);
+        Set<String> changed = new LinkedHashSet<>();
+        current.forEach((sheet, hash) -> {
+            if (!hash.equals(base.get(sheet))) {
+                changed.add(sheet);
+            }
+        });
+        base.keySet().stream().filter(sheet -> !current.containsKey(sheet)).forEach(changed::add);
+        return changed;
+    }
+
+    private static Map<String, String> baseSheetHashes(String mergeBase) throws IOException {
+        Path baseWorkbook = Files.createTempFile("impact-base-", ".xlsx");
+        try {
+            Files.write(baseWorkbook, git("show", mergeBase + ":./" + WORKBOOK));
+            return sheetHashes(baseWorkbook);
+        } catch (IOException e) {
+            logger.info("No workbook at the merge base, treating every sheet as changed");
+            return Map.of();
+        } finally {
+            Files.deleteIfExists(baseWorkbook);
+        }
+    }
+
+    // Sheet -> SHA-256 of its rows as the tests see them, so a re-saved but unchanged sheet keeps its hash.
+    private static Map<String, String> sheetHashes(Path workbook) {
+        Map<String, String> hashes = new TreeMap<>();
+        for (String sheet : TestDataEngine.sheetNames(workbook)) {
+            MessageDigest digest = sha256();
+            Iterator<Object[]> rows = TestDataEngine.textRows(workbook, sheet);
+            while (rows.hasNext()) {
+                digest.update((Arrays.deepToString(rows.next()) + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            hashes.put(sheet, HexFormat.of().formatHex(digest.digest()));
+        }
+        return hashes;
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Copies the suite's attributes, parameters and listeners; one <test> per selected class.
+    private static void write(Document suite, Map<String, String> selected, Path output) throws IOException {
+        Element root = suite.getDocumentElement();
+        StringBuilder xml = new StringBuilder();
+        xml.append("<!DOCTYPE suite SYSTEM \"https://testng.org/testng-1.0.dtd\" >\n");
+        xml.append("<!-- Generated by utils.ImpactAnalyzer from ").append(SUITE).append("; do not edit -->\n");
+        xml.append("<suite");
+        NamedNodeMap attributes = root.getAttributes();
+        for (int i = 0; i < attributes.getLength(); i++) {
+            Node attribute = attributes.item(i);
+            String value = attribute.getNodeName().equals("name") ? attribute.getNodeValue() + " (impacted)" : attribute.getNodeValue();
+            xml.append(' ').append(attribute.getNodeName()).append("=\"").append(escape(value)).append('"');
+        }
+        xml.append(">\n");
+
+        for (Node child = root.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof Element && ((Element) child).getTagName().equals("parameter")) {
+                Element parameter = (Element) child;
+                xml.append("    <parameter name=\"").append(escape(parameter.getAttribute("name")))
+                        .append("\" value=\"").append(escape(parameter.getAttribute("value"))).append("\"/>\n");
+            }
+        }
+        NodeList listeners = root.getElementsByTagName("listener");
+        if (listeners.getLength() > 0) {
+            xml.append("\n    <listeners>\n");
+            for (int i = 0; i < listeners.getLength(); i++) {
+                xml.append("        <listener class-name=\"")
+                        .append(escape(((Element) listeners.item(i)).getAttribute("class-name"))).append("\"/>\n");
+            }
+            xml.append("    </listeners>\n");
+        }
+
+        selected.forEach((name, reason) -> xml.append("\n    <!-- ").append(reason.replace("--", "- -")).append(" -->\n")
+                .append("    <test name=\"").append(escape(simpleName(name))).append("\">\n")
+                .append("        <classes>\n")
+                .append("            <class name=\"").append(escape(name)).append("\"/>\n")
+                .append("        </classes>\n")
+                .append("    </test>\n"));
+        xml.append("\n</suite>\n");
+
+        if (output.toAbsolutePath().getParent() != null) {
+            Files.createDirectories(output.toAbsolutePath().getParent());
+        }
+        Files.writeString(output, xml, StandardCharsets.UTF_8);
+    }
+
+    private static Document parse(Path file) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        // The DTD is only declared; fetching it would need the network
+        factory.setFeature("http://apache.org/xml/features/nonvalidating/load-external-dtd", false);
+        factory.setIgnoringComments(true);
+        return factory.newDocumentBuilder().parse(file.toFile());
+    }
+
+    private static byte[] git(String... args) throws IOException {
+        List<String> command = new ArrayList<>(List.of("git", "-c", "core.quotepath=off"));
+        command.addAll(Arrays.asList(args));
+        Process process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.DISCARD).start();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (InputStream in = process.getInputStream()) {
+            in.transferTo(out);
+            if (process.waitFor() != 0) {
+                throw new IOException(String.join(" ", args) + " exited with " + process.exitValue());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted running git " + String.join(" ", args), e);
+        }
+        return out.toByteArray();
+    }
+
+    private static String text(byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static List<String> lines(byte[] bytes) {
+        return text(bytes).lines().map(String::trim).filter(line -> !line.isEmpty()).collect(Collectors.toList());
+    }
+
+    private static boolean isMain(Path source) {
+        return source.toString().replace('\\', '/').startsWith(SOURCE_ROOTS.get(0));
+    }
+
+    // tests.SearchTest, src/test/java/tests/SearchTest.java -> SearchTest
+    private static String simpleName(String name) {
+        String base = name.replace('\\', '/');
+        base = base.substring(base.lastIndexOf('/') + 1);
+        if (base.endsWith(".java")) {
+            base = base.substring(0, base.length() - ".java".length());
+        }
+        return base.substring(base.lastIndexOf('.') + 1);
+    }
+
+    private static String escape(String value) {
+        return Objects.toString(value, "").replace("&", "&amp;").replace("\"", "&quot;").replace("<", "&lt;").replace(">", "&gt;");
+    }
+}
@@ -0,0 +1,355 @@
+package utils;
+
+import driver.DriverFactory;
+import driver.DriverServices;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.chrome.ChromeOptions;
+import org.openqa.selenium.json.Json;
+import pages.LoginPage;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.net.JarURLConnection;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.stream.Stream;
+
+/**
+ * Build step that measures what every {@link By} field of the page objects costs to resolve, and
+ * suggests a faster CSS selector where one finds exactly the same elements.
+ * <p>
+ * Locators are found by reflection over every class in the {@code pages} package. Each is resolved
+ * {@code locatorProfile.iterations} times inside the browser, on each of the pages the suite visits
+ * (home, search results, login, failed login, and account when there are credentials to log in with),
+ * and its cost is the slowest of those averages.
+ * Candidate selectors (by id, attribute, class, or position under the nearest element with an id) are
+ * derived from the elements the locator matches; a candidate is only suggested when it matches the
+ * same elements in the same order on every page, and is faster. Note that a suggestion for a
+ * text-matching XPath no longer checks the text.
+ * <p>
+ * The report goes to the log and {@code target/locator-profile.json}. The process exits with status 1
+ * when a locator costs more than {@code locatorProfile.budgetMicros}, so {@code mvn -Plocator-profile verify}
+ * fails. Run with {@code -Dstorefront.enabled=true} to profile against the local storefront, whose search
+ * page lists {@code storefront.products} products.
+ * <p>
+ * Usage: {@code LocatorProfiler [report.json]}; defaults to target/locator-profile.json.
+ */
+public class LocatorProfiler {
+
+    private static final Logger logger = LogManager.getLogger(LocatorProfiler.class);
+
+    private static final String PAGES_PACKAGE = "pages";
+
+    private static final String TIME_JS = ElementQuery.FIND_ELEMENTS_JS
+            + "var using = arguments[0], value = arguments[1], n = arguments[2];"
+            + "var count = findAll(using, value).length;"
+            + "var start = performance.now();"
+            + "for (var i = 0; i < n; i++) { findAll(using, value); }"
+            + "return {count: count, micros: (performance.now() - start) * 1000 / n};";
+
+    private static final String CANDIDATES_JS = ElementQuery.FIND_ELEMENTS_JS
+            + "var els = findAll(arguments[0], arguments[1]), out = [];"
+            + "function add(s) { if (out.indexOf(s) < 0) { out.push(s); } }"
+            + "function quote(v) { return '\"' + v.replace(/\\\\/g, '\\\\\\\\').replace(/\"/g, '\\\\\"') + '\"'; }"
+            + "els.slice(0, 3).forEach(function (el) {"
+            + "  var tag = el.tagName.toLowerCase();"
+            + "  add(tag);"
+            + "  if (el.id) { add('#' + CSS.escape(el.id)); }"
+            + "  ['name', 'value', 'type', 'placeholder', 'title', 'aria-label', 'data-testid'].forEach(function (a) {"
+            + "    var v = el.getAttribute(a);"
+            + "    if (v !== null && v.length > 0 && v.length < 80) { add(tag + '[' + a + '=' + quote(v) + ']'); }"
+            + "  });"
+            + "  var href = el.getAttribute('href');"
+            + "  if (href) { add(tag + '[href$=' + quote(href.substring(href.lastIndexOf('/') + 1)) + ']'); }"
+            + "  if (el.classList.length) { add(tag + '.' + Array.from(el.classList).map(CSS.escape).join('.')); }"
+            + "  var parent = el.parentElement;"
+            + "  if (parent && parent.id) {"
+            + "    var nth = 1, sib = el;"
+            + "    while ((sib = sib.previousElementSibling)) { if (sib.tagName === el.tagName) { nth++; } }"
+            + "    add('#' + CSS.escape(parent.id) + ' > ' + tag + ':nth-of-type(' + nth + ')');"
+            + "  }"
+            + "  for (var p = parent, depth = 0; p && depth < 5; p = p.parentElement, depth++) {"
+            + "    if (p.id) { add('#' + CSS.escape(p.id) + ' ' + tag); break; }"
+            + "  }"
+            + "});"
+            + "return out;";
+
+    private static final String SAME_JS = ElementQuery.FIND_ELEMENTS_JS
+            + "var a = findAll(arguments[0], arguments[1]), b;"
+            + "try { b = findAll('css selector', arguments[2]); } catch (e) { return false; }"
+            + "return a.length === b.length && a.every(function (el, i) { return el === b[i]; });";
+
+    public static void main(String[] args) throws Exception {
+        Path report = Paths.get(args.length > 0 ? args[0] : "target/locator-profile.json");
+        int iterations = Config.get().getInt("locatorProfile.iterations", 500);
+        double budgetMicros = Config.get().getDouble("locatorProfile.budgetMicros", 100);
+
+        StorefrontServer.startIfEnabled();
+        ChromeOptions options = new ChromeOptions();
+        options.addArguments("--headless=new", "--disable-gpu", "--no-sandbox", "--disable-dev-shm-usage");
+        WebDriver driver = DriverFactory.initDriver("chrome", options);
+        boolean overBudget;
+        try {
+            Map<String, By> locators = pageLocators(driver);
+            Map<String, Consumer<WebDriver>> pages = pages();
+            logger.info("Profiling {} locator(s) on {} page(s), {} lookups each", locators.size(), pages.size(), iterations);
+
+            // Pass 1: candidate selectors from the elements each locator matches on any page
+            Map<String, Set<String>> candidates = new LinkedHashMap<>();
+            for (Map.Entry<String, Consumer<WebDriver>> page : pages.entrySet()) {
+                page.getValue().accept(driver);
+                locators.forEach((name, by) -> candidates.computeIfAbsent(name, k -> new LinkedHashSet<>())
+                        .addAll(candidates(driver, by)));
+            }
+
+            // Pass 2: time every locator and every candidate that still matches the same elements on this page
+            Map<String, Result> results = new LinkedHashMap<>();
+            locators.forEach((name, by) -> results.put(name, new Result(name, by, candidates.get(name))));
+            for (Map.Entry<String, Consumer<WebDriver>> page : pages.entrySet()) {
+                page.getValue().accept(driver);
+                for (Result result : results.values()) {
+                    result.measure(driver, page.getKey(), iterations);
+                }
+            }
+
+            overBudget = report(results.values(), budgetMicros, report);
+        } finally {
+            DriverFactory.quitDriver();
+            DriverServices.shutdownAll();
+            StorefrontServer.stop();
+        }
+        if (overBudget) {
+            System.exit(1);
+        }
+    }
+
+    // The pages the suite visits, each reached the way the tests reach it.
+    private static Map<String, Consumer<WebDriver>> pages() {
+        Config config = Config.get(); // after the local storefront, if any, has set its URLs
+        String baseUrl = config.getString("baseUrl");
+        String loginUrl = config.getString("loginUrl");
+        String searchTerm = config.getString("locatorProfile.searchTerm", "Product");
+        Map<String, Consumer<WebDriver>> pages = new LinkedHashMap<>();
+        pages.put("home", d -> d.get(baseUrl));
+        pages.put("search", d -> d.get(baseUrl + "?route=product/search&search=" + URLEncoder.encode(searchTerm, StandardCharsets.UTF_8)));
+        pages.put("login", d -> d.get(loginUrl));
+        pages.put("login-error", d -> {
+            d.get(loginUrl);
+            new LoginPage(d).login("locator.profiler@example.com", "not-a-password");
+        });
+        String[] account = account(config);
+        if (account != null) {
+            pages.put("account", d -> {
+                d.manage().deleteAllCookies();
+                d.get(loginUrl);
+                new LoginPage(d).login(account[0], account[1]);
+            });
+        } else {
+            logger.warn("No validUsername configured and no login sheet row expected to succeed; skipping the account page");
+        }
+        return pages;
+    }
+
+    // validUsername/validPassword when configured, else the first login sheet row marked "success", as the storefront accepts
+    private static String[] account(Config config) {
+        String username = config.getString("validUsername");
+        if (username != null && !username.isBlank()) {
+            return new String[]{username, config.getString("validPassword", "")};
+        }
+        for (Object[] row : ExcelUtil.getSheetData("login")) {
+            if (row.length > 2 && "success".equalsIgnoreCase(String.valueOf(row[2]).trim())) {
+                return new String[]{String.valueOf(row[0]), String.valueOf(row[1])};
+            }
+        }
+        return null;
+    }
+
+    private static List<String> candidates(WebDriver driver, By by) {
+        Map<String, String> remote = remote(by);
+        Object found = ((JavascriptExecutor) driver).executeScript(CANDIDATES_JS, remote.get("using"), remote.get("value"));
+        List<String> selectors = new ArrayList<>();
+        if (found instanceof List) {
+            for (Object selector : (List<?>) found) {
+                selectors.add(String.valueOf(selector));
+            }
+        }
+        return selectors;
+    }
+
+    private static Map<String, String> remote(By by) {
+        if (!(by instanceof By.Remotable)) {
+            throw new IllegalArgumentException("Cannot profile locator " + by);
+        }
+        By.Remotable.Parameters parameters = ((By.Remotable) by).getRemoteParameters();
+        return Map.of("using", parameters.using(), "value", String.valueOf(parameters.value()));
+    }
+
+    /**
+     * Every By field of every class in the pages package, as "Class.field", read from an instance
+     * built on the profiling driver.
+     */
+    static Map<String, By> pageLocators(WebDriver driver) throws ReflectiveOperationException, IOException, URISyntaxException {
+        Map<String, By> locators = new LinkedHashMap<>();
+        for (String className : classesIn(PAGES_PACKAGE)) {
+            Class<?> type = Class.forName(className);
+            Object page = null;
+            for (Field field : type.getDeclaredFields()) {
+                if (!By.class.isAssignableFrom(field.getType())) {
+                    continue;
+                }
+                field.setAccessible(true);
+                if (!Modifier.isStatic(field.getModifiers()) && page == null) {
+                    page = type.getConstructor(WebDriver.class).newInstance(driver);
+                }
+                By by = (By) field.get(Modifier.isStatic(field.getModifiers()) ? null : page);
+                if (by != null) {
+                    locators.put(type.getSimpleName() + "." + field.getName(), by);
+                }
+            }
+        }
+        return locators;
+    }
+
+    // Top-level classes of a package, from a directory or a jar on the class path.
+    private static Set<String> classesIn(String packageName) throws IOException, URISyntaxException {
+        Set<String> classes = new TreeSet<>();
+        String path = packageName.replace('.', '/');
+        Enumeration<URL> roots = LocatorProfiler.class.getClassLoader().getResources(path);
+        while (roots.hasMoreElements()) {
+            URL root = roots.nextElement();
+            if ("jar".equals(root.getProtocol())) {
+                try (JarFile jar = ((JarURLConnection) root.openConnection()).getJarFile()) {
+                    for (Enumeration<JarEntry> entries = jar.entries(); entries.hasMoreElements(); ) {
+                        String entry = entries.nextElement().getName();
+                        if (entry.startsWith(path + "/") && entry.endsWith(".class") && !entry.contains("$")
+                                && entry.indexOf('/', path.length() + 1) < 0) {
+                            classes.add(entry.substring(0, entry.length() - 6).replace('/', '.'));
+                        }
+                    }
+                }
+            } else {
+                try (Stream<Path> files = Files.list(Paths.get(root.toURI()))) {
+                    files.map(file -> file.getFileName().toString())
+                            .filter(file -> file.endsWith(".class") && !file.contains("$"))
+                            .forEach(file -> classes.add(packageName + "." + file.substring(0, file.length() - 6)));
+                }
+            }
+        }
+        return classes;
+    }
+
+    private static boolean report(Iterable<Result> results, double budgetMicros, Path file) throws IOException {
+        StringBuilder table = new StringBuilder(String.format("%n%-28s %-13s %10s  %-45s %10s%n",
+                "Locator", "Strategy", "Cost (µs)", "Faster equivalent", "Cost (µs)"));
+        List<Map<String, Object>> json = new ArrayList<>();
+        boolean overBudget = false;
+        for (Result result : results) {
+            Map.Entry<String, Double> best = result.bestCandidate();
+            boolean exceeds = result.cost() > budgetMicros;
+            overBudget |= exceeds;
+            table.append(String.format("%-28s %-13s %10.1f  %-45s %10s%s%n", result.name, result.using, result.cost(),
+                    best != null ? best.getKey() : "-", best != null ? String.format("%.1f", best.getValue()) : "-",
+                    exceeds ? "  OVER BUDGET" : ""));
+
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("locator", result.name);
+            entry.put("using", result.using);
+            entry.put("value", result.value);
+            entry.put("costMicros", result.cost());
+            entry.put("costMicrosByPage", result.costs);
+            entry.put("matchesByPage", result.counts);
+            entry.put("suggestion", best != null ? best.getKey() : null);
+            entry.put("suggestionCostMicros", best != null ? best.getValue() : null);
+            entry.put("overBudget", exceeds);
+            json.add(entry);
+        }
+        logger.info("Locator cost (slowest page, per lookup; budget {} µs):{}", budgetMicros, table);
+
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write(new Json().toJson(Map.of("budgetMicros", budgetMicros, "locators", json)));
+        }
+        logger.info("Locator profile written to {}", file);
+        if (overBudget) {
+            logger.error("At least one locator exceeds the budget of {} µs", budgetMicros);
+        }
+        return overBudget;
+    }
+
+    private static final class Result {
+        final String name;
+        final String using;
+        final String value;
+
+        // Page -> average micros per lookup and number of matches of the locator itself.
+        final Map<String, Double> costs = new LinkedHashMap<>();
+        final Map<String, Long> counts = new LinkedHashMap<>();
+
+        // Candidate -> slowest average so far; dropped as soon as it differs from the locator on a page.
+        final Map<String, Double> candidates = new LinkedHashMap<>();
+
+        Result(String name, By by, Set<String> candidates) {
+            this.name = name;
+            Map<String, String> remote = remote(by);
+            this.using = remote.get("using");
+            this.value = remote.get("value");
+            for (String candidate : candidates) {
+                if (!("css selector".equals(using) && candidate.equals(value))) {
+                    this.candidates.put(candidate, 0.0);
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        void measure(WebDriver driver, String page, int iterations) {
+            JavascriptExecutor js = (JavascriptExecutor) driver;
+            Map<String, Object> own = (Map<String, Object>) js.executeScript(TIME_JS, using, value, iterations);
+            costs.put(page, ((Number) own.get("micros")).doubleValue());
+            counts.put(page, ((Number) own.get("count")).longValue());
+
+            candidates.entrySet().removeIf(candidate ->
+                    !Boolean.TRUE.equals(js.executeScript(SAME_JS, using, value, candidate.getKey())));
+            for (Map.Entry<String, Double> candidate : candidates.entrySet()) {
+                Map<String, Object> timing = (Map<String, Object>) js.executeScript(TIME_JS, "css selector", candidate.getKey(), iterations);
+                candidate.setValue(Math.max(candidate.getValue(), ((Number) timing.get("micros")).doubleValue()));
+            }
+        }
+
+        double cost() {
+            return costs.values().stream().mapToDouble(Double::doubleValue).max().orElse(0);
+        }
+
+        // The fastest equivalent that beats the locator itself, or null.
+        Map.Entry<String, Double> bestCandidate() {
+            Map.Entry<String, Double> best = null;
+            for (Map.Entry<String, Double> candidate : candidates.entrySet()) {
+                if (candidate.getValue() < cost() && (best == null || candidate.getValue() < best.getValue())) {
+                    best = candidate;
+                }
+            }
+            return best;
+        }
+    }
+}
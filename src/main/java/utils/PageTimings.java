@@ -0,0 +1,224 @@
+package utils;
+
+import io.qameta.allure.Allure;
+import listeners.TestHistory;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures how fast a page loads, or how long an interaction takes to produce its next page, and
+ * checks the result against the budgets in config.properties.
+ * <p>
+ * Metrics come from the browser's Navigation Timing, Paint Timing and Resource Timing entries, in
+ * milliseconds from the start of the navigation: {@code ttfb}, {@code domContentLoaded}, {@code load},
+ * {@code firstPaint}, {@code firstContentfulPaint}, plus {@code resources} (count) and
+ * {@code transferKb}. {@link #measure(String, Runnable)} adds {@code actionToReady}: the time from
+ * starting the action until a new document (a different {@code performance.timeOrigin}) has been parsed,
+ * so the old page is never mistaken for the result. A metric the page has not reached yet (the
+ * load event under the "eager" page-load strategy, say) is left out.
+ * <p>
+ * A budget is {@code perf.budget.<page>.<metric>=<limit>}. Exceeding one fails the test with an
+ * AssertionError when {@code perf.budget.enforce} is true, and is only logged otherwise; left blank,
+ * budgets are enforced only against the local storefront, whose timings do not depend on a remote site.
+ * Every measurement is also attached to the test's Allure result as text (not as parameters, which
+ * identify the test's data row) and, via {@link #writeTrend()}, appended to {@code page-timings.csv}
+ * in the history directory so it can be charted across builds.
+ */
+public class PageTimings {
+
+    private static final Logger logger = LogManager.getLogger(PageTimings.class);
+
+    private static final boolean ENABLED = Config.get().getBoolean("perf.timings.enabled", true);
+    private static final boolean ENFORCE = Config.get().getBoolean("perf.budget.enforce",
+            Config.get().getBoolean("storefront.enabled", false));
+
+    private static final Path TREND_FILE = TestHistory.HISTORY_DIR.resolve("page-timings.csv");
+
+    private static final String TIMINGS_JS =
+            "var r = {}, nav = performance.getEntriesByType('navigation')[0];"
+            + "if (nav) {"
+            + "  r.ttfb = nav.responseStart - nav.requestStart;"
+            + "  r.domContentLoaded = nav.domContentLoadedEventEnd;"
+            + "  r.load = nav.loadEventEnd;"
+            + "}"
+            + "performance.getEntriesByType('paint').forEach(function (p) {"
+            + "  r[p.name === 'first-paint' ? 'firstPaint' : 'firstContentfulPaint'] = p.startTime;"
+            + "});"
+            + "var resources = performance.getEntriesByType('resource'), bytes = nav ? nav.transferSize : 0;"
+            + "resources.forEach(function (e) { bytes += e.transferSize || 0; });"
+            + "r.resources = resources.length;"
+            + "r.transferKb = bytes / 1024;"
+            + "return r;";
+
+    private static final String READY_JS = "return document.readyState !== 'loading';";
+
+    // Parsed, and a different document than the one whose time origin is passed in.
+    private static final String NEW_PAGE_READY_JS =
+            "return performance.timeOrigin !== arguments[0] && document.readyState !== 'loading';";
+
+    // Measurements of this run, appended to the trend file by writeTrend().
+    private static final ConcurrentLinkedQueue<String> trend = new ConcurrentLinkedQueue<>();
+
+    private static final AtomicLong measurements = new AtomicLong();
+    private static final AtomicLong breaches = new AtomicLong();
+
+    private final WebDriver driver;
+    private final WaitHelper wait;
+
+    public PageTimings(WebDriver driver) {
+        this.driver = driver;
+        this.wait = new WaitHelper(driver);
+    }
+
+    /**
+     * Records the timings of the page currently loaded and checks them against the page's budgets.
+     * @param page Budget name of the page, e.g. "account".
+     * @return Metric -> milliseconds (count or KB for resources/transferKb); empty when disabled.
+     * @throws AssertionError When a budget is exceeded and budgets are enforced.
+     */
+    public Map<String, Long> record(String page) {
+        if (!ENABLED) {
+            return Map.of();
+        }
+        waitUntilParsed();
+        return check(page, read());
+    }
+
+    /**
+     * Runs an interaction that leads to a new page (submitting a search, say) and records how long it
+     * took until that page was parsed, plus the new page's own timings.
+     * @param page Budget name of the resulting page, e.g. "search".
+     * @param action The interaction, e.g. clicking the search button.
+     * @return Metric -> milliseconds, including actionToReady; empty when disabled.
+     * @throws AssertionError When a budget is exceeded and budgets are enforced.
+     */
+    public Map<String, Long> measure(String page, Runnable action) {
+        if (!ENABLED) {
+            action.run();
+            return Map.of();
+        }
+        Object previousOrigin = ((JavascriptExecutor) driver).executeScript("return performance.timeOrigin;");
+        long start = System.nanoTime();
+        action.run();
+        wait.waitUntil(d -> {
+            try {
+                return Boolean.TRUE.equals(((JavascriptExecutor) d).executeScript(NEW_PAGE_READY_JS, previousOrigin)) ? Boolean.TRUE : null;
+            } catch (WebDriverException e) {
+                return null; // the old document is being torn down
+            }
+        });
+        long actionToReady = (System.nanoTime() - start) / 1_000_000;
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        metrics.put("actionToReady", actionToReady);
+        metrics.putAll(read());
+        return check(page, metrics);
+    }
+
+    private void waitUntilParsed() {
+        wait.waitUntil(d -> Boolean.TRUE.equals(((JavascriptExecutor) d).executeScript(READY_JS)) ? Boolean.TRUE : null);
+    }
+
+    private Map<String, Long> read() {
+        Map<String, Long> metrics = new LinkedHashMap<>();
+        try {
+            Object raw = ((JavascriptExecutor) driver).executeScript(TIMINGS_JS);
+            if (raw instanceof Map) {
+                ((Map<?, ?>) raw).forEach((name, value) -> {
+                    if (value instanceof Number && ((Number) value).doubleValue() > 0) {
+                        metrics.put(name.toString(), Math.round(((Number) value).doubleValue()));
+                    }
+                });
+            }
+        } catch (WebDriverException e) {
+            logger.warn("Could not read page timings: {}", e.getMessage());
+        }
+        return metrics;
+    }
+
+    private static Map<String, Long> check(String page, Map<String, Long> metrics) {
+        measurements.incrementAndGet();
+        String build = build();
+        String now = Instant.now().toString();
+        List<String> exceeded = new ArrayList<>();
+        Config config = Config.get();
+        StringBuilder report = new StringBuilder();
+        metrics.forEach((metric, value) -> {
+            report.append(metric).append(" = ").append(value).append('\n');
+            trend.add(now + "," + build + "," + page + "," + metric + "," + value);
+            long budget = config.getLong("perf.budget." + page + "." + metric, Long.MAX_VALUE);
+            if (value > budget) {
+                exceeded.add(metric + " " + value + " > " + budget);
+            }
+        });
+        logger.info("Page timings for '{}': {}", page, metrics);
+        Allure.addAttachment("Page timings: " + page, "text/plain", report.toString(), ".txt");
+        if (!exceeded.isEmpty()) {
+            breaches.incrementAndGet();
+            String message = "Performance budget exceeded on '" + page + "': " + String.join(", ", exceeded);
+            if (ENFORCE) {
+                throw new AssertionError(message);
+            }
+            logger.warn(message);
+        }
+        return metrics;
+    }
+
+    // CI build number when there is one, so trend rows of one build can be grouped.
+    private static String build() {
+        for (String variable : new String[]{"BUILD_NUMBER", "GITHUB_RUN_NUMBER", "CI_PIPELINE_ID"}) {
+            String value = System.getenv(variable);
+            if (value != null && !value.isBlank()) {
+                return value;
+            }
+        }
+        return "local";
+    }
+
+    /**
+     * Appends this run's measurements to the trend file (timestamp,build,page,metric,value).
+     */
+    public static synchronized void writeTrend() {
+        if (trend.isEmpty()) {
+            return;
+        }
+        try {
+            Files.createDirectories(TREND_FILE.getParent());
+            boolean newFile = !Files.exists(TREND_FILE);
+            try (Writer out = Files.newBufferedWriter(TREND_FILE, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                if (newFile) {
+                    out.write("timestamp,build,page,metric,value\n");
+                }
+                String line;
+                while ((line = trend.poll()) != null) {
+                    out.write(line);
+                    out.write('\n');
+                }
+            }
+            logger.info("Page timings appended to {}", TREND_FILE);
+        } catch (IOException e) {
+            logger.warn("Could not write page timing trend: {}", e.getMessage());
+        }
+    }
+
+    public static String getStats() {
+        return String.format("Page timings: %d measurement(s), %d over budget", measurements.get(), breaches.get());
+    }
+}
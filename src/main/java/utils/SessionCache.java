@@ -0,0 +1,235 @@
+package utils;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.openqa.selenium.Cookie;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.WebDriver;
+import org.openqa.selenium.WebDriverException;
+import org.openqa.selenium.chromium.HasCdp;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Caches authenticated browser state so only one test per credential set pays for the UI login form.
+ * <p>
+ * After a real login the session's cookies plus localStorage and sessionStorage are captured. Later
+ * sessions get that snapshot restored before their first page load: Chrome receives the cookies over
+ * CDP with no navigation at all; other browsers (and any storage entries) need one cheap same-origin
+ * page first. Snapshots expire after {@code sessionCache.ttlMinutes}, or earlier when a captured cookie
+ * expires. A restored session the site rejects is dropped and the caller falls back to a real login.
+ */
+public final class SessionCache {
+
+    private static final Logger logger = LogManager.getLogger(SessionCache.class);
+
+    private static final boolean ENABLED = Config.get().getBoolean("sessionCache.enabled", true);
+    private static final long TTL_MILLIS = Config.get().getLong("sessionCache.ttlMinutes", 15) * 60_000;
+
+    private static final String CAPTURE_STORAGE_JS =
+            "function dump(s) { var o = {}; for (var i = 0; i < s.length; i++) { var k = s.key(i); o[k] = s.getItem(k); } return o; }"
+            + "return {origin: window.location.origin, local: dump(window.localStorage), session: dump(window.sessionStorage)};";
+
+    private static final String RESTORE_STORAGE_JS =
+            "var local = arguments[0], session = arguments[1];"
+            + "Object.keys(local).forEach(function (k) { window.localStorage.setItem(k, local[k]); });"
+            + "Object.keys(session).forEach(function (k) { window.sessionStorage.setItem(k, session[k]); });";
+
+    // Login key -> the latest snapshot for it.
+    private static final Map<String, Snapshot> snapshots = new ConcurrentHashMap<>();
+
+    // Login key -> lock, so parallel tests needing the same user wait for one UI login instead of all doing one.
+    private static final Map<String, Object> locks = new ConcurrentHashMap<>();
+
+    private static final AtomicLong restored = new AtomicLong();
+    private static final AtomicLong uiLogins = new AtomicLong();
+    private static final AtomicLong rejected = new AtomicLong();
+
+    private SessionCache() {
+    }
+
+    /**
+     * A UI login flow. Returns true once the browser is authenticated.
+     */
+    @FunctionalInterface
+    public interface Login {
+        boolean perform(WebDriver driver);
+    }
+
+    /**
+     * Authenticates the session, restoring a cached snapshot when there is a valid one and logging in
+     * through the UI otherwise. Either way the browser ends up on an authenticated page.
+     * @param driver The session to authenticate.
+     * @param key Identifies the credential set, e.g. the username.
+     * @param landingUrl Page loaded after a restore to check the snapshot was accepted.
+     * @param isAuthenticated Checks whether the loaded landing page is an authenticated one, waiting at most
+     *                        as long as the page may still need to render; a login redirect should fail fast.
+     * @param uiLogin The real login flow, used on a cache miss or when the restored session is rejected.
+     * @return true if the session is authenticated.
+     */
+    public static boolean authenticate(WebDriver driver, String key, String landingUrl,
+                                       Predicate<WebDriver> isAuthenticated, Login uiLogin) {
+        if (!ENABLED) {
+            return uiLogin.perform(driver);
+        }
+        Snapshot cached = fresh(key);
+        if (cached != null && tryRestore(driver, key, cached, landingUrl, isAuthenticated)) {
+            return true;
+        }
+        synchronized (locks.computeIfAbsent(key, k -> new Object())) {
+            // Another thread may have logged in while this one waited for the lock.
+            Snapshot latest = fresh(key);
+            if (latest != null && latest != cached && tryRestore(driver, key, latest, landingUrl, isAuthenticated)) {
+                return true;
+            }
+            uiLogins.incrementAndGet();
+            if (!uiLogin.perform(driver)) {
+                return false;
+            }
+            try {
+                snapshots.put(key, capture(driver));
+                logger.info("Captured session snapshot for '{}'", key);
+            } catch (WebDriverException e) {
+                logger.warn("Could not capture session snapshot for '{}': {}", key, e.getMessage());
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Drops the snapshot of one credential set, e.g. after a test changed its password or logged it out server-side.
+     */
+    public static void invalidate(String key) {
+        snapshots.remove(key);
+    }
+
+    /**
+     * @return A one-line summary of restores, UI logins and rejected snapshots.
+     */
+    public static String getStats() {
+        return String.format("Session cache: %d restored, %d UI logins, %d rejected snapshots",
+                restored.get(), uiLogins.get(), rejected.get());
+    }
+
+    private static Snapshot fresh(String key) {
+        Snapshot snapshot = snapshots.get(key);
+        if (snapshot != null && snapshot.isExpired()) {
+            logger.debug("Session snapshot for '{}' expired", key);
+            snapshots.remove(key, snapshot);
+            return null;
+        }
+        return snapshot;
+    }
+
+    private static boolean tryRestore(WebDriver driver, String key, Snapshot snapshot, String landingUrl,
+                                      Predicate<WebDriver> isAuthenticated) {
+        try {
+            restore(driver, snapshot);
+            driver.get(landingUrl);
+            if (isAuthenticated.test(driver)) {
+                restored.incrementAndGet();
+                logger.info("Restored session snapshot for '{}'", key);
+                return true;
+            }
+        } catch (WebDriverException e) {
+            logger.warn("Restoring session snapshot for '{}' failed: {}", key, e.getMessage());
+        }
+        rejected.incrementAndGet();
+        snapshots.remove(key, snapshot);
+        driver.manage().deleteAllCookies();
+        logger.info("Session snapshot for '{}' was rejected; logging in through the UI", key);
+        return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Snapshot capture(WebDriver driver) {
+        Map<String, Object> storage = (Map<String, Object>) ((JavascriptExecutor) driver).executeScript(CAPTURE_STORAGE_JS);
+        return new Snapshot((String) storage.get("origin"), driver.manage().getCookies(),
+                toStrings((Map<String, Object>) storage.get("local")), toStrings((Map<String, Object>) storage.get("session")));
+    }
+
+    private static void restore(WebDriver driver, Snapshot snapshot) {
+        boolean needsPage = !snapshot.localStorage.isEmpty() || !snapshot.sessionStorage.isEmpty();
+        if (driver instanceof HasCdp) {
+            for (Cookie cookie : snapshot.cookies) {
+                ((HasCdp) driver).executeCdpCommand("Network.setCookie", cdpCookie(cookie, snapshot.origin));
+            }
+        } else {
+            needsPage = true;
+        }
+        if (!needsPage) {
+            return;
+        }
+        // Cookies and storage can only be set from a page of the right origin; the favicon is the cheapest one.
+        driver.get(snapshot.origin + "/favicon.ico");
+        if (!(driver instanceof HasCdp)) {
+            for (Cookie cookie : snapshot.cookies) {
+                driver.manage().addCookie(cookie);
+            }
+        }
+        ((JavascriptExecutor) driver).executeScript(RESTORE_STORAGE_JS, snapshot.localStorage, snapshot.sessionStorage);
+    }
+
+    private static Map<String, Object> cdpCookie(Cookie cookie, String origin) {
+        Map<String, Object> params = new HashMap<>();
+        params.put("name", cookie.getName());
+        params.put("value", cookie.getValue());
+        params.put("path", cookie.getPath() == null ? "/" : cookie.getPath());
+        params.put("secure", cookie.isSecure());
+        params.put("httpOnly", cookie.isHttpOnly());
+        if (cookie.getDomain() != null) {
+            params.put("domain", cookie.getDomain());
+        } else {
+            params.put("url", origin);
+        }
+        if (cookie.getExpiry() != null) {
+            params.put("expires", cookie.getExpiry().getTime() / 1000);
+        }
+        if (cookie.getSameSite() != null) {
+            params.put("sameSite", cookie.getSameSite());
+        }
+        return params;
+    }
+
+    private static Map<String, String> toStrings(Map<String, Object> values) {
+        Map<String, String> strings = new LinkedHashMap<>();
+        if (values != null) {
+            values.forEach((k, v) -> strings.put(k, v == null ? null : v.toString()));
+        }
+        return strings;
+    }
+
+    private static final class Snapshot {
+        final String origin;
+        final Set<Cookie> cookies;
+        final Map<String, String> localStorage;
+        final Map<String, String> sessionStorage;
+        final long expiresAt;
+
+        Snapshot(String origin, Set<Cookie> cookies, Map<String, String> localStorage, Map<String, String> sessionStorage) {
+            this.origin = origin;
+            this.cookies = cookies;
+            this.localStorage = localStorage;
+            this.sessionStorage = sessionStorage;
+            long expiry = System.currentTimeMillis() + TTL_MILLIS;
+            for (Cookie cookie : cookies) {
+                Date cookieExpiry = cookie.getExpiry();
+                if (cookieExpiry != null) {
+                    expiry = Math.min(expiry, cookieExpiry.getTime());
+                }
+            }
+            this.expiresAt = expiry;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() >= expiresAt;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package utils;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.ref.Cleaner;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Pulls rows out of one worksheet XML part with StAX, one {@code <row>} at a time.
+ * <p>
+ * Only the current row is held in memory. Spreadsheet row 1 is the header and only fixes the
+ * column count; a sheet whose row 1 is empty has no header and yields no rows, as the workbook
+ * model did. Every following row present in the sheet, blank ones included, is returned as an
+ * {@code Object[]} of {@link String}, {@link Double} or {@link Boolean}. Formula cells yield their
+ * cached result, blank cells yield "" and error cells yield "ERROR". The stream is closed when the
+ * last row is read, or once an iterator abandoned halfway becomes unreachable.
+ */
+class SheetRowIterator implements Iterator<Object[]>, AutoCloseable {
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = createFactory();
+
+    // Closes the zip entry stream of iterators nobody reads to the end.
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final InputStream in;
+    private final XMLStreamReader xml;
+    private final String[] sharedStrings;
+    private final Cleaner.Cleanable cleanable;
+    private int columns = -1;
+    private Object[] next;
+    private boolean closed;
+
+    SheetRowIterator(InputStream in, String[] sharedStrings) {
+        this.in = in;
+        this.sharedStrings = sharedStrings;
+        this.cleanable = CLEANER.register(this, new CloseStream(in));
+        try {
+            this.xml = XML_INPUT_FACTORY.createXMLStreamReader(in);
+        } catch (XMLStreamException e) {
+            throw new IllegalStateException("Cannot read worksheet XML", e);
+        }
+    }
+
+    /**
+     * @return The number of columns defined by the header row, or -1 before the header has been read.
+     */
+    int getColumnCount() {
+        if (columns < 0) {
+            hasNext();
+        }
+        return columns;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next == null && !closed) {
+            next = readNextDataRow();
+        }
+        return next != null;
+    }
+
+    @Override
+    public Object[] next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Object[] row = next;
+        next = null;
+        return row;
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            xml.close();
+        } catch (XMLStreamException e) {
+            // Nothing useful can be done; the data has already been delivered.
+        }
+        cleanable.clean();
+    }
+
+    // Must not refer to the iterator, or the iterator would never become unreachable.
+    private static final class CloseStream implements Runnable {
+        private final InputStream in;
+
+        CloseStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public void run() {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // Nothing useful can be done; the data has already been delivered.
+            }
+        }
+    }
+
+    private Object[] readNextDataRow() {
+        try {
+            while (xml.hasNext()) {
+                if (xml.next() != XMLStreamConstants.START_ELEMENT || !"row".equals(xml.getLocalName())) {
+                    continue;
+                }
+                // Empty rows are left out of the XML, so the first <row> need not be row 1
+                String rowNumber = xml.getAttributeValue(null, "r");
+                List<Object> cells = readRow();
+                if (columns < 0) {
+                    if (rowNumber != null && !"1".equals(rowNumber.trim())) {
+                        break; // no header row
+                    }
+                    columns = cells.size();
+                    continue;
+                }
+                Object[] row = new Object[columns];
+                for (int c = 0; c < columns; c++) {
+                    Object value = c < cells.size() ? cells.get(c) : null;
+                    row[c] = value == null ? "" : value;
+                }
+                return row;
+            }
+            close();
+            return null;
+        } catch (XMLStreamException e) {
+            close();
+            throw new UncheckedIOException(new IOException("Malformed worksheet XML", e));
+        }
+    }
+
+    // Reads the cells of the current <row>, placing each at the column given by its "r" reference.
+    private List<Object> readRow() throws XMLStreamException {
+        List<Object> cells = new ArrayList<>();
+        int column = 0;
+        while (xml.hasNext()) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.END_ELEMENT && "row".equals(xml.getLocalName())) {
+                return cells;
+            }
+            if (event == XMLStreamConstants.START_ELEMENT && "c".equals(xml.getLocalName())) {
+                String ref = xml.getAttributeValue(null, "r");
+                if (ref != null) {
+                    column = columnIndex(ref);
+                }
+                Object value = readCell(xml.getAttributeValue(null, "t"));
+                while (cells.size() <= column) {
+                    cells.add(null);
+                }
+                cells.set(column, value);
+                column++;
+            }
+        }
+        return cells;
+    }
+
+    // Reads the current <c> element up to its end tag and converts its value according to the cell type.
+    private Object readCell(String type) throws XMLStreamException {
+        String raw = null;
+        StringBuilder inline = null;
+        while (xml.hasNext()) {
+            int event = xml.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                String name = xml.getLocalName();
+                if ("v".equals(name)) {
+                    raw = xml.getElementText();
+                } else if ("t".equals(name) && "inlineStr".equals(type)) {
+                    inline = inline == null ? new StringBuilder() : inline;
+                    inline.append(xml.getElementText());
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT && "c".equals(xml.getLocalName())) {
+                break;
+            }
+        }
+        if (inline != null) {
+            return inline.toString();
+        }
+        if (raw == null) {
+            return null;
+        }
+        if (type == null || "n".equals(type)) {
+            return Double.valueOf(raw);
+        }
+        switch (type) {
+            case "s":
+                return sharedStrings[Integer.parseInt(raw.trim())];
+            case "b":
+                return "1".equals(raw.trim()) || "true".equalsIgnoreCase(raw.trim());
+            case "e":
+                return "ERROR";
+            default: // "str" (formula result) and anything else textual
+                return raw;
+        }
+    }
+
+    static int columnIndex(String cellRef) {
+        int index = 0;
+        for (int i = 0; i < cellRef.length(); i++) {
+            char ch = cellRef.charAt(i);
+            if (ch < 'A' || ch > 'Z') {
+                break;
+            }
+            index = index * 26 + (ch - 'A' + 1);
+        }
+        return index - 1;
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        return factory;
+    }
+}
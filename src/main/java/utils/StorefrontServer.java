@@ -0,0 +1,393 @@
+package utils;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A local stand-in for the demo storefront, so the suite can run without internet access and with
+ * network conditions that are the same from run to run.
+ * <p>
+ * It serves the pages the page objects use, with the same URLs, form fields and markup their locators
+ * expect: home, search results, product, login, account and logout. The catalog holds the products
+ * the Products sheet expects to find plus generated ones up to {@code storefront.products}; the
+ * accounts are the login sheet rows expected to succeed plus {@code validUsername}. Every response can
+ * be delayed ({@code storefront.latencyMillis} plus up to {@code storefront.jitterMillis}) and its body
+ * throttled to {@code storefront.bandwidthKbps}.
+ * <p>
+ * Started by BaseTest when {@code storefront.enabled=true} (e.g. {@code -Dstorefront.enabled=true});
+ * it then overrides {@code baseUrl}, {@code loginUrl} and {@code accountUrl} for the whole run.
+ */
+public final class StorefrontServer {
+
+    private static final Logger logger = LogManager.getLogger(StorefrontServer.class);
+
+    private static final String SESSION_COOKIE = "OCSESSID";
+    private static final String INDEX = "/demo/index.php";
+
+    private static StorefrontServer running;
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final List<String> catalog;
+    private final Map<String, String> accounts;
+    private final long latencyMillis;
+    private final long jitterMillis;
+    private final long bytesPerSecond;
+
+    // Session cookie value -> logged-in e-mail.
+    private final Map<String, String> sessions = new ConcurrentHashMap<>();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong bytesSent = new AtomicLong();
+    private final AtomicLong injectedMillis = new AtomicLong();
+
+    private StorefrontServer(int port, int threads, List<String> catalog, Map<String, String> accounts,
+                             long latencyMillis, long jitterMillis, long bandwidthKbps) throws IOException {
+        this.catalog = catalog;
+        this.accounts = accounts;
+        this.latencyMillis = latencyMillis;
+        this.jitterMillis = jitterMillis;
+        this.bytesPerSecond = bandwidthKbps * 1024 / 8;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), task -> {
+            Thread thread = new Thread(task, "storefront-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        this.server.createContext("/", this::handle);
+        this.server.setExecutor(executor);
+        this.server.start();
+    }
+
+    /**
+     * Starts the server if {@code storefront.enabled} is true and points the suite's URLs at it.
+     * Does nothing when it is already running.
+     * @return The base URL the suite now uses, or null when the server is disabled.
+     */
+    public static synchronized String startIfEnabled() {
+        Config config = Config.get();
+        if (!config.getBoolean("storefront.enabled", false)) {
+            return null;
+        }
+        if (running == null) {
+            try {
+                running = new StorefrontServer(
+                        config.getInt("storefront.port", 0),
+                        config.getInt("storefront.threads", 16),
+                        catalog(config.getInt("storefront.products", 200)),
+                        accounts(config),
+                        config.getLong("storefront.latencyMillis", 0),
+                        config.getLong("storefront.jitterMillis", 0),
+                        config.getLong("storefront.bandwidthKbps", 0));
+            } catch (IOException e) {
+                throw new IllegalStateException("Could not start the local storefront: " + e.getMessage(), e);
+            }
+            String index = running.origin() + INDEX;
+            Config.override("baseUrl", index);
+            Config.override("loginUrl", index + "?route=account/login");
+            Config.override("accountUrl", index + "?route=account/account");
+            logger.info("Local storefront serving {} products at {} (latency {}+{} ms, bandwidth {})",
+                    running.catalog.size(), index, running.latencyMillis, running.jitterMillis,
+                    running.bytesPerSecond > 0 ? (running.bytesPerSecond * 8 / 1024) + " kbps" : "unlimited");
+        }
+        return Config.get().getString("baseUrl");
+    }
+
+    /**
+     * Stops the server, if it is running.
+     */
+    public static synchronized void stop() {
+        if (running != null) {
+            running.server.stop(0);
+            running.executor.shutdownNow();
+            running = null;
+        }
+    }
+
+    public static synchronized String getStats() {
+        if (running == null) {
+            return "Local storefront: not running";
+        }
+        return String.format("Local storefront: %d request(s), %d KB sent, %d ms of injected latency",
+                running.requests.get(), running.bytesSent.get() / 1024, running.injectedMillis.get());
+    }
+
+    private String origin() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+    }
+
+    // ---- Routing -------------------------------------------------------------------------------------------
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try (exchange) {
+            String path = exchange.getRequestURI().getPath();
+            if (path.equals("/favicon.ico")) {
+                send(exchange, 200, "image/x-icon", new byte[0]);
+                return;
+            }
+            if (!path.equals(INDEX)) {
+                send(exchange, 404, "text/html", page("Page Not Found", "<h1>The page you requested cannot be found!</h1>"));
+                return;
+            }
+            Map<String, String> query = parse(exchange.getRequestURI().getRawQuery());
+            String route = query.getOrDefault("route", "common/home");
+            switch (route) {
+                case "common/home" -> send(exchange, 200, "text/html", home());
+                case "product/search" -> send(exchange, 200, "text/html", search(query.getOrDefault("search", "")));
+                case "product/product" -> send(exchange, 200, "text/html", product(query.get("product_id")));
+                case "account/login" -> login(exchange);
+                case "account/account" -> account(exchange);
+                case "account/logout" -> {
+                    String session = session(exchange);
+                    if (session != null) {
+                        sessions.remove(session);
+                    }
+                    send(exchange, 200, "text/html", page("Account Logout",
+                            "<div id=\"common-success\"><h1>Account Logout</h1><p>You have been logged off your account.</p></div>"));
+                }
+                default -> send(exchange, 404, "text/html", page("Page Not Found", "<h1>The page you requested cannot be found!</h1>"));
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Local storefront failed on {}: {}", exchange.getRequestURI(), e.toString());
+            throw e;
+        }
+    }
+
+    private byte[] home() {
+        return page("Your Store", "<div id=\"common-home\"><h3>Featured</h3><div class=\"row\">"
+                + productThumbs(List.of(0, 1, 2, 3).subList(0, Math.min(4, catalog.size()))) + "</div></div>");
+    }
+
+    private byte[] search(String term) {
+        List<Integer> matches = new ArrayList<>();
+        String needle = term.toLowerCase(Locale.ROOT);
+        if (!needle.isBlank()) {
+            for (int i = 0; i < catalog.size(); i++) {
+                if (catalog.get(i).toLowerCase(Locale.ROOT).contains(needle)) {
+                    matches.add(i);
+                }
+            }
+        }
+        String results = matches.isEmpty()
+                ? "<p>There is no product that matches the search criteria.</p>"
+                : "<div class=\"row\">" + productThumbs(matches) + "</div>";
+        return page("Search - " + term, "<div id=\"product-search\"><h1>Search - " + escape(term) + "</h1>" + results + "</div>");
+    }
+
+    private byte[] product(String id) {
+        int index;
+        try {
+            index = Integer.parseInt(id);
+        } catch (NumberFormatException e) {
+            index = -1;
+        }
+        if (index < 0 || index >= catalog.size()) {
+            return page("Product not found!", "<h1>Product not found!</h1>");
+        }
+        String name = catalog.get(index);
+        return page(name, "<div id=\"product-product\"><h1>" + escape(name) + "</h1>"
+                + "<p class=\"price\">$" + (100 + index) + ".00</p></div>");
+    }
+
+    private void login(HttpExchange exchange) throws IOException {
+        if (!"POST".equalsIgnoreCase(exchange.getRequestMethod())) {
+            send(exchange, 200, "text/html", loginPage(false));
+            return;
+        }
+        Map<String, String> form = parse(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+        String email = form.getOrDefault("email", "");
+        if (!form.getOrDefault("password", "").equals(accounts.get(email))) {
+            send(exchange, 200, "text/html", loginPage(true));
+            return;
+        }
+        String session = UUID.randomUUID().toString().replace("-", "");
+        sessions.put(session, email);
+        exchange.getResponseHeaders().add("Set-Cookie", SESSION_COOKIE + "=" + session + "; Path=/; HttpOnly");
+        redirect(exchange, INDEX + "?route=account/account");
+    }
+
+    private byte[] loginPage(boolean failed) {
+        // As on the real site, the first div of #account-login is the warning when there is one.
+        String warning = failed
+                ? "<div class=\"alert alert-danger alert-dismissible\">Warning: No match for E-Mail Address and/or Password.</div>"
+                : "";
+        return page("Account Login", "<div id=\"account-login\" class=\"container\">"
+                + "<ul class=\"breadcrumb\"><li><a href=\"" + INDEX + "?route=account/login\">Login</a></li></ul>"
+                + warning
+                + "<div class=\"row\"><div id=\"content\"><h2>Returning Customer</h2>"
+                + "<form action=\"" + INDEX + "?route=account/login\" method=\"post\" enctype=\"application/x-www-form-urlencoded\">"
+                + "<label for=\"input-email\">E-Mail Address</label><input type=\"text\" name=\"email\" id=\"input-email\" class=\"form-control\"/>"
+                + "<label for=\"input-password\">Password</label><input type=\"password\" name=\"password\" id=\"input-password\" class=\"form-control\"/>"
+                + "<input type=\"submit\" value=\"Login\" class=\"btn btn-primary\"/>"
+                + "</form></div></div></div>");
+    }
+
+    private void account(HttpExchange exchange) throws IOException {
+        String session = session(exchange);
+        if (session == null || !sessions.containsKey(session)) {
+            redirect(exchange, INDEX + "?route=account/login");
+            return;
+        }
+        send(exchange, 200, "text/html", page("My Account", "<div id=\"account-account\" class=\"container\">"
+                + "<div class=\"row\"><div id=\"content\"><h2>My Account</h2><ul class=\"list-unstyled\">"
+                + "<li><a href=\"" + INDEX + "?route=account/edit\">Edit your account information</a></li></ul></div>"
+                + "<aside id=\"column-right\"><div class=\"list-group\">"
+                + "<a href=\"" + INDEX + "?route=account/logout\" class=\"list-group-item\">Logout</a>"
+                + "</div></aside></div></div>"));
+    }
+
+    // ---- Markup --------------------------------------------------------------------------------------------
+
+    private String productThumbs(List<Integer> productIds) {
+        StringBuilder html = new StringBuilder();
+        for (int id : productIds) {
+            html.append("<div class=\"product-layout col-lg-3\"><div class=\"product-thumb\"><div class=\"caption\"><h4><a href=\"")
+                    .append(INDEX).append("?route=product/product&amp;product_id=").append(id).append("\">")
+                    .append(escape(catalog.get(id))).append("</a></h4></div></div></div>");
+        }
+        return html.toString();
+    }
+
+    // Every page has the header search box, like the real site; its button is the first .btn.btn-default.
+    private static byte[] page(String title, String content) {
+        String html = "<!DOCTYPE html><html><head><meta charset=\"UTF-8\"><title>" + escape(title) + "</title>"
+                + "<style>body{font-family:sans-serif;margin:0 2em}.product-thumb{display:inline-block;width:220px;margin:8px}</style>"
+                + "</head><body><header><div id=\"logo\"><a href=\"" + INDEX + "\">Your Store</a></div>"
+                + "<form id=\"search\" class=\"input-group\" action=\"" + INDEX + "\" method=\"get\">"
+                + "<input type=\"hidden\" name=\"route\" value=\"product/search\"/>"
+                + "<input type=\"text\" name=\"search\" value=\"\" placeholder=\"Search\" class=\"form-control input-lg\"/>"
+                + "<span class=\"input-group-btn\"><button type=\"submit\" class=\"btn btn-default btn-lg\">Search</button></span>"
+                + "</form></header><div class=\"container\">" + content + "</div></body></html>";
+        return html.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String escape(String text) {
+        return text.replace("&", "&amp;").replace("<", "&lt;").replace(">", "&gt;").replace("\"", "&quot;");
+    }
+
+    // ---- HTTP ----------------------------------------------------------------------------------------------
+
+    private void redirect(HttpExchange exchange, String location) throws IOException {
+        exchange.getResponseHeaders().add("Location", location);
+        send(exchange, 302, "text/html", new byte[0]);
+    }
+
+    private void send(HttpExchange exchange, int status, String contentType, byte[] body) throws IOException {
+        injectLatency();
+        exchange.getResponseHeaders().add("Content-Type", contentType + "; charset=utf-8");
+        exchange.getResponseHeaders().add("Cache-Control", "no-store");
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        if (body.length == 0) {
+            return;
+        }
+        OutputStream out = exchange.getResponseBody();
+        if (bytesPerSecond <= 0) {
+            out.write(body);
+        } else {
+            // Twenty chunks per second at the configured rate
+            int chunk = (int) Math.max(256, bytesPerSecond / 20);
+            for (int offset = 0; offset < body.length; offset += chunk) {
+                int length = Math.min(chunk, body.length - offset);
+                out.write(body, offset, length);
+                out.flush();
+                sleep(length * 1000L / bytesPerSecond);
+            }
+        }
+        bytesSent.addAndGet(body.length);
+    }
+
+    private void injectLatency() {
+        long delay = latencyMillis + (jitterMillis > 0 ? ThreadLocalRandom.current().nextLong(jitterMillis + 1) : 0);
+        if (delay > 0) {
+            injectedMillis.addAndGet(delay);
+            sleep(delay);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static String session(HttpExchange exchange) {
+        for (String header : exchange.getRequestHeaders().getOrDefault("Cookie", List.of())) {
+            for (String cookie : header.split(";")) {
+                String[] pair = cookie.trim().split("=", 2);
+                if (pair.length == 2 && pair[0].equals(SESSION_COOKIE)) {
+                    return pair[1];
+                }
+            }
+        }
+        return null;
+    }
+
+    private static Map<String, String> parse(String encoded) {
+        Map<String, String> values = new HashMap<>();
+        if (encoded == null || encoded.isEmpty()) {
+            return values;
+        }
+        for (String pair : encoded.split("&")) {
+            String[] parts = pair.split("=", 2);
+            values.put(URLDecoder.decode(parts[0], StandardCharsets.UTF_8),
+                    parts.length > 1 ? URLDecoder.decode(parts[1], StandardCharsets.UTF_8) : "");
+        }
+        return values;
+    }
+
+    // ---- Fixture data --------------------------------------------------------------------------------------
+
+    // Products the Products sheet expects to find come first, then generated ones up to the requested size.
+    private static List<String> catalog(int size) {
+        List<String> names = new ArrayList<>();
+        for (Object[] row : ExcelUtil.getSheetData("Products")) {
+            if (row.length > 1 && Boolean.parseBoolean(String.valueOf(row[1]).trim()) && !names.contains(String.valueOf(row[0]))) {
+                names.add(String.valueOf(row[0]));
+            }
+        }
+        for (int i = 1; names.size() < size; i++) {
+            names.add(String.format("Fixture Product %05d", i));
+        }
+        return names;
+    }
+
+    // E-mail -> password: the login sheet rows expected to succeed, plus the configured valid user.
+    private static Map<String, String> accounts(Config config) {
+        Map<String, String> accounts = new ConcurrentHashMap<>();
+        for (Object[] row : ExcelUtil.getSheetData("login")) {
+            if (row.length > 2 && "success".equalsIgnoreCase(String.valueOf(row[2]).trim())) {
+                accounts.put(String.valueOf(row[0]), String.valueOf(row[1]));
+            }
+        }
+        String username = config.getString("validUsername");
+        if (username != null && !username.isBlank()) {
+            accounts.put(username, config.getString("validPassword", ""));
+        }
+        return accounts;
+    }
+}
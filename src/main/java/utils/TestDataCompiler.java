@@ -0,0 +1,30 @@
+package utils;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Build step that compiles every sheet of a workbook into {@link CompiledSheet} files.
+ * Sheets whose compiled file already matches the workbook hash are left alone.
+ * <p>
+ * Usage: {@code TestDataCompiler [workbook.xlsx] [outputDir]}; defaults to
+ * src/test/resources/testdata.xlsx and target/testdata-compiled.
+ */
+public class TestDataCompiler {
+
+    private static final Logger logger = LogManager.getLogger(TestDataCompiler.class);
+
+    public static void main(String[] args) {
+        Path workbook = Paths.get(args.length > 0 ? args[0] : "src/test/resources/testdata.xlsx");
+        Path outputDir = args.length > 1 ? Paths.get(args[1]) : CompiledSheet.DEFAULT_OUTPUT_DIR;
+
+        for (String sheet : TestDataEngine.sheetNames(workbook)) {
+            Path target = CompiledSheet.fileFor(outputDir, workbook, sheet);
+            boolean compiled = CompiledSheet.compileIfStale(workbook, sheet, target);
+            logger.info("{}: sheet '{}' -> {}", compiled ? "Compiled" : "Up to date", sheet, target);
+        }
+    }
+}
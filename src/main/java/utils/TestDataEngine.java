@@ -0,0 +1,259 @@
+package utils;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.lang.ref.SoftReference;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Reads test data workbooks without loading them into POI's DOM model.
+ * <p>
+ * Each workbook is indexed once per JVM with POI's streaming XSSF reader (sheet names and the
+ * shared string table), keyed by the SHA-256 of its content. Rows are then pulled from the
+ * worksheet XML lazily, so a data provider never needs the whole sheet in memory.
+ */
+public final class TestDataEngine {
+
+    private static final Logger logger = LogManager.getLogger(TestDataEngine.class);
+
+    // Content hash -> parsed workbook index. A changed file gets a new hash and is indexed again.
+    private static final Map<String, WorkbookIndex> workbooks = new ConcurrentHashMap<>();
+
+    // Workbook path -> last computed hash, reused while size and modification time are unchanged.
+    private static final Map<Path, FileStamp> stamps = new ConcurrentHashMap<>();
+
+    // Classpath resource name -> path on disk, so jar-packed workbooks are extracted only once.
+    private static final Map<String, Path> resources = new ConcurrentHashMap<>();
+
+    // "hash/sheet" -> fully read sheet, for callers of the array API. Soft so the GC can reclaim large sheets.
+    private static final Map<String, SoftReference<Object[][]>> materialized = new ConcurrentHashMap<>();
+
+    private TestDataEngine() {
+    }
+
+    /**
+     * Locates a workbook on the test classpath. Workbooks packed inside a jar are copied to a temp file once.
+     * @param resourceName Classpath resource name, e.g. "testdata.xlsx".
+     * @return The workbook's path on disk.
+     */
+    public static Path resource(String resourceName) {
+        return resources.computeIfAbsent(resourceName, TestDataEngine::locate);
+    }
+
+    private static Path locate(String resourceName) {
+        URL url = TestDataEngine.class.getClassLoader().getResource(resourceName);
+        if (url == null) {
+            throw new IllegalArgumentException(resourceName + " not found in resources!");
+        }
+        try {
+            if ("file".equals(url.getProtocol())) {
+                return Paths.get(url.toURI());
+            }
+            Path copy = Files.createTempFile("testdata", ".xlsx");
+            copy.toFile().deleteOnExit();
+            try (InputStream in = url.openStream()) {
+                Files.copy(in, copy, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return copy;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Bad resource URL " + url, e);
+        }
+    }
+
+    /**
+     * @param workbook Path of an .xlsx file.
+     * @return The hex SHA-256 of the file content.
+     */
+    public static String hash(Path workbook) {
+        try {
+            Path key = workbook.toAbsolutePath().normalize();
+            long size = Files.size(key);
+            long modified = Files.getLastModifiedTime(key).toMillis();
+            FileStamp stamp = stamps.get(key);
+            if (stamp == null || stamp.size != size || stamp.modified != modified) {
+                stamp = new FileStamp(size, modified, sha256(key));
+                stamps.put(key, stamp);
+            }
+            return stamp.hash;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return The sheet names of the workbook, in workbook order.
+     */
+    public static List<String> sheetNames(Path workbook) {
+        return new ArrayList<>(index(workbook).sheetEntries.keySet());
+    }
+
+    /**
+     * Streams the data rows of a sheet with every value converted to text, the same shape
+     * {@link ExcelUtil#getSheetData(String)} has always returned.
+     */
+    public static Iterator<Object[]> textRows(Path workbook, String sheetName) {
+        Iterator<Object[]> typed = typedRows(workbook, sheetName);
+        return new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return typed.hasNext();
+            }
+
+            @Override
+            public Object[] next() {
+                Object[] row = typed.next();
+                for (int c = 0; c < row.length; c++) {
+                    row[c] = asText(row[c]);
+                }
+                return row;
+            }
+        };
+    }
+
+    /**
+     * Streams the data rows of a sheet keeping cell types: {@link String}, {@link Double} or {@link Boolean}.
+     */
+    public static Iterator<Object[]> typedRows(Path workbook, String sheetName) {
+        WorkbookIndex index = index(workbook);
+        String entryName = index.sheetEntries.get(sheetName);
+        if (entryName == null) {
+            throw new IllegalArgumentException("Sheet '" + sheetName + "' not found.");
+        }
+        try {
+            ZipEntry entry = index.zip.getEntry(entryName);
+            return new SheetRowIterator(index.zip.getInputStream(entry), index.sharedStrings);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Reads a whole sheet as text. The result is cached per workbook content, so repeated
+     * data provider calls for the same sheet cost nothing after the first.
+     */
+    public static Object[][] sheet(Path workbook, String sheetName) {
+        String key = hash(workbook) + "/" + sheetName;
+        SoftReference<Object[][]> cached = materialized.get(key);
+        Object[][] rows = cached == null ? null : cached.get();
+        if (rows == null) {
+            List<Object[]> list = new ArrayList<>();
+            textRows(workbook, sheetName).forEachRemaining(list::add);
+            rows = list.toArray(new Object[0][]);
+            materialized.put(key, new SoftReference<>(rows));
+        }
+        // Copy the outer array so callers cannot reorder the cached rows.
+        return rows.clone();
+    }
+
+    static Object asText(Object value) {
+        if (value instanceof Double || value instanceof Boolean) {
+            return String.valueOf(value);
+        }
+        return value;
+    }
+
+    private static WorkbookIndex index(Path workbook) {
+        String hash = hash(workbook);
+        return workbooks.computeIfAbsent(hash, h -> WorkbookIndex.load(workbook, h));
+    }
+
+    private static String sha256(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                digest.update(buffer, 0, read);
+            }
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class FileStamp {
+        final long size;
+        final long modified;
+        final String hash;
+
+        FileStamp(long size, long modified, String hash) {
+            this.size = size;
+            this.modified = modified;
+            this.hash = hash;
+        }
+    }
+
+    private static final class WorkbookIndex {
+        // Kept open for the JVM lifetime; ZipFile supports concurrent entry reads.
+        final ZipFile zip;
+        final Map<String, String> sheetEntries;
+        final String[] sharedStrings;
+
+        private WorkbookIndex(ZipFile zip, Map<String, String> sheetEntries, String[] sharedStrings) {
+            this.zip = zip;
+            this.sheetEntries = sheetEntries;
+            this.sharedStrings = sharedStrings;
+        }
+
+        static WorkbookIndex load(Path workbook, String hash) {
+            long start = System.nanoTime();
+            Map<String, String> sheets = new LinkedHashMap<>();
+            String[] strings;
+            try (OPCPackage pkg = OPCPackage.open(workbook.toFile(), PackageAccess.READ)) {
+                XSSFReader reader = new XSSFReader(pkg);
+                XSSFReader.SheetIterator it = (XSSFReader.SheetIterator) reader.getSheetsData();
+                while (it.hasNext()) {
+                    it.next().close();
+                    sheets.put(it.getSheetName(), it.getSheetPart().getPartName().getName().substring(1));
+                }
+                strings = readSharedStrings(new ReadOnlySharedStringsTable(pkg));
+                ZipFile zip = new ZipFile(workbook.toFile());
+                logger.info("Indexed {} ({} sheets, {} shared strings, hash {}) in {} ms", workbook.getFileName(),
+                        sheets.size(), strings.length, hash.substring(0, 12), (System.nanoTime() - start) / 1_000_000);
+                return new WorkbookIndex(zip, sheets, strings);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } catch (Exception e) {
+                throw new IllegalStateException("Cannot index workbook " + workbook, e);
+            }
+        }
+
+        // The uniqueCount attribute is optional, so read until the table runs out instead of trusting it.
+        private static String[] readSharedStrings(ReadOnlySharedStringsTable sst) {
+            List<String> strings = new ArrayList<>(Math.max(16, sst.getUniqueCount()));
+            while (true) {
+                try {
+                    strings.add(sst.getItemAt(strings.size()).getString());
+                } catch (IndexOutOfBoundsException e) {
+                    return strings.toArray(new String[0]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package utils;
+
+import org.apache.logging.log4j.ThreadContext;
+import org.apache.logging.log4j.core.Appender;
+import org.apache.logging.log4j.core.Core;
+import org.apache.logging.log4j.core.Filter;
+import org.apache.logging.log4j.core.Layout;
+import org.apache.logging.log4j.core.LogEvent;
+import org.apache.logging.log4j.core.appender.AbstractAppender;
+import org.apache.logging.log4j.core.config.Property;
+import org.apache.logging.log4j.core.config.plugins.Plugin;
+import org.apache.logging.log4j.core.config.plugins.PluginAttribute;
+import org.apache.logging.log4j.core.config.plugins.PluginElement;
+import org.apache.logging.log4j.core.config.plugins.PluginFactory;
+import org.apache.logging.log4j.core.layout.PatternLayout;
+import org.apache.logging.log4j.status.StatusLogger;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A log4j2 appender that keeps the log of each running test in memory, including DEBUG lines.
+ * <p>
+ * Events are routed by the {@code testId} thread-context key, which {@link #start(String)} sets on the
+ * test thread. Each test keeps at most {@code maxEventsPerTest} lines, dropping the oldest. When the
+ * test ends, {@link #finish(String, boolean)} hands the text back (BaseTest attaches it to the Allure
+ * result) and, for a failed test only, writes it to {@code logs/failed-tests/}, so passing tests never
+ * put their DEBUG detail on disk. Events logged outside a test are ignored.
+ */
+@Plugin(name = "TestLogBuffer", category = Core.CATEGORY_NAME, elementType = Appender.ELEMENT_TYPE)
+public final class TestLogBuffer extends AbstractAppender {
+
+    public static final String TEST_ID = "testId";
+
+    private static final Path FAILED_TESTS_DIR = Paths.get("logs", "failed-tests");
+
+    // Test id -> its lines. Shared by all instances, since a config reload creates a new appender.
+    private static final Map<String, Buffer> buffers = new ConcurrentHashMap<>();
+
+    private static volatile int maxEvents = 2000;
+
+    private TestLogBuffer(String name, Filter filter, Layout<? extends Serializable> layout) {
+        super(name, filter, layout, true, Property.EMPTY_ARRAY);
+    }
+
+    @PluginFactory
+    public static TestLogBuffer createAppender(@PluginAttribute("name") String name,
+                                               @PluginAttribute(value = "maxEventsPerTest", defaultInt = 2000) int maxEventsPerTest,
+                                               @PluginElement("Layout") Layout<? extends Serializable> layout,
+                                               @PluginElement("Filter") Filter filter) {
+        maxEvents = Math.max(1, maxEventsPerTest);
+        return new TestLogBuffer(name, filter, layout != null ? layout : PatternLayout.createDefaultLayout());
+    }
+
+    @Override
+    public void append(LogEvent event) {
+        String testId = event.getContextData().getValue(TEST_ID);
+        if (testId == null) {
+            return;
+        }
+        Buffer buffer = buffers.get(testId);
+        if (buffer != null) {
+            buffer.add(new String(getLayout().toByteArray(event), StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Starts buffering for a test and tags everything the calling thread logs with its id.
+     */
+    public static void start(String testId) {
+        buffers.put(testId, new Buffer(maxEvents));
+        ThreadContext.put(TEST_ID, testId);
+    }
+
+    /**
+     * Ends buffering for a test. The log of a failed test is also written to logs/failed-tests.
+     * @param testId The id given to {@link #start(String)}.
+     * @param failed Whether the test failed.
+     * @return The buffered log, or an empty string if nothing was buffered.
+     */
+    public static String finish(String testId, boolean failed) {
+        Buffer buffer = buffers.remove(testId);
+        if (ThreadContext.get(TEST_ID) != null && ThreadContext.get(TEST_ID).equals(testId)) {
+            ThreadContext.remove(TEST_ID);
+        }
+        if (buffer == null) {
+            return "";
+        }
+        String text = buffer.text();
+        if (failed) {
+            try {
+                Files.createDirectories(FAILED_TESTS_DIR);
+                Files.writeString(FAILED_TESTS_DIR.resolve(testId.replaceAll("[^A-Za-z0-9_.#-]", "_") + ".log"), text);
+            } catch (IOException e) {
+                // The Allure attachment still has the log; don't fail the test over the file copy.
+                StatusLogger.getLogger().error("Could not write the log of failed test {}", testId, e);
+            }
+        }
+        return text;
+    }
+
+    /**
+     * @return The id of the test running on the calling thread, or null outside a test.
+     */
+    public static String currentTestId() {
+        return ThreadContext.get(TEST_ID);
+    }
+
+    private static final class Buffer {
+        private final ArrayDeque<String> lines = new ArrayDeque<>();
+        private final int max;
+        private int dropped;
+
+        Buffer(int max) {
+            this.max = max;
+        }
+
+        // Written by the test thread; synchronized because the test id may be handed to helper threads too.
+        synchronized void add(String line) {
+            if (lines.size() == max) {
+                lines.removeFirst();
+                dropped++;
+            }
+            lines.addLast(line);
+        }
+
+        synchronized String text() {
+            StringBuilder text = new StringBuilder();
+            if (dropped > 0) {
+                text.append("... ").append(dropped).append(" earlier line(s) dropped ...\n");
+            }
+            lines.forEach(text::append);
+            return text.toString();
+        }
+    }
+}
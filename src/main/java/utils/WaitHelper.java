@@ -1,36 +1,235 @@
 package utils;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 import org.openqa.selenium.By;
+import org.openqa.selenium.JavascriptException;
+import org.openqa.selenium.JavascriptExecutor;
+import org.openqa.selenium.NotFoundException;
+import org.openqa.selenium.ScriptTimeoutException;
+import org.openqa.selenium.StaleElementReferenceException;
+import org.openqa.selenium.TimeoutException;
+import org.openqa.selenium.UnsupportedCommandException;
 import org.openqa.selenium.WebDriver;
 import org.openqa.selenium.WebElement;
 import org.openqa.selenium.support.ui.ExpectedConditions;
-import org.openqa.selenium.support.ui.WebDriverWait;
 
 import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
+/**
+ * Waits for page conditions without fixed-interval polling.
+ * <p>
+ * In "event" mode (the default, see {@code wait.mode} in config.properties) visibility, clickability and
+ * title waits run as one async script that checks the condition whenever the DOM mutates and returns
+ * the moment it holds. Browsers that cannot run async scripts, and custom conditions, use polling that
+ * starts at a few milliseconds and backs off exponentially. A script that fails, for example because the
+ * page navigated mid-wait, hands the rest of that one wait to polling.
+ * <p>
+ * Every wait logs how long it blocked; totals for the whole run are available from {@link #getTotalBlockedMillis()}.
+ */
 public class WaitHelper {
-    @SuppressWarnings("unused")
-	private WebDriver driver;
-    private WebDriverWait wait;
 
-    // Constructor: initialize with default 10s wait
+    private static final Logger logger = LogManager.getLogger(WaitHelper.class);
+
+    private static final boolean EVENT_MODE = !"polling".equalsIgnoreCase(Config.get().getString("wait.mode", "event"));
+
+    private static final Duration DEFAULT_TIMEOUT = Config.get().getDuration("wait.timeout", Duration.ofSeconds(10));
+
+    // Polling backoff: first retry after FIRST_POLL, doubling up to MAX_POLL.
+    private static final long FIRST_POLL_MILLIS = 10;
+    private static final long MAX_POLL_MILLIS = 500;
+
+    // One async script runs at most this long, well under the 30 s default script timeout; longer waits use several slices.
+    private static final long SCRIPT_SLICE_MILLIS = 5_000;
+
+    // After this many waits in a row whose script failed, the helper stops trying event mode.
+    private static final int MAX_SCRIPT_FAILURES = 3;
+
+    private static final String WAIT_JS = ElementQuery.FIND_ELEMENTS_JS
+            + "var condition = arguments[0], using = arguments[1], value = arguments[2], timeout = arguments[3];"
+            + "var callback = arguments[arguments.length - 1];"
+            + "function check() {"
+            + "  if (condition === 'title') { return document.title.indexOf(value) >= 0 ? true : null; }"
+            // Like ExpectedConditions, only the first match counts, even if a later one is visible.
+            + "  var el = findAll(using, value)[0];"
+            + "  return el && isVisible(el) && (condition !== 'clickable' || !el.disabled) ? el : null;"
+            + "}"
+            + "var initial = check();"
+            + "if (initial) { callback(initial); return; }"
+            + "var done = false, observer, safety, timer;"
+            + "function finish(result) {"
+            + "  if (done) { return; }"
+            + "  done = true; observer.disconnect(); clearInterval(safety); clearTimeout(timer); callback(result);"
+            + "}"
+            + "function recheck() { if (!done) { var found = check(); if (found) { finish(found); } } }"
+            + "observer = new MutationObserver(recheck);"
+            + "observer.observe(document, {childList: true, subtree: true, attributes: true, characterData: true});"
+            // CSS transitions and animations change visibility without DOM mutations, so also re-check occasionally.
+            + "safety = setInterval(recheck, 100);"
+            + "timer = setTimeout(function () { finish(null); }, timeout);";
+
+    private static final AtomicLong totalWaits = new AtomicLong();
+    private static final AtomicLong totalBlockedMillis = new AtomicLong();
+
+    private final WebDriver driver;
+    private final Duration timeout;
+    private boolean eventMode;
+    private int scriptFailures;
+    private long lastWaitMillis;
+
+    // Constructor: timeout from wait.timeout in config.properties
+    public WaitHelper(WebDriver driver) {
+        this(driver, DEFAULT_TIMEOUT);
+    }
+
     public WaitHelper(WebDriver driver, int timeoutSeconds) {
+        this(driver, Duration.ofSeconds(timeoutSeconds));
+    }
+
+    public WaitHelper(WebDriver driver, Duration timeout) {
         this.driver = driver;
-        this.wait = new WebDriverWait(driver, Duration.ofSeconds(timeoutSeconds));
+        this.timeout = timeout;
+        this.eventMode = EVENT_MODE && driver instanceof JavascriptExecutor;
     }
 
-    // Wait until element is visible
+    // Wait until the first element matching the locator is visible, as ExpectedConditions.visibilityOfElementLocated
     public WebElement waitForElementVisible(By locator) {
-        return wait.until(ExpectedConditions.visibilityOfElementLocated(locator));
+        return (WebElement) await("visible", locator, null, ExpectedConditions.visibilityOfElementLocated(locator));
     }
 
-    // Wait until element is clickable
+    // Wait until the first element matching the locator is visible and enabled, as ExpectedConditions.elementToBeClickable
     public WebElement waitForElementClickable(By locator) {
-        return wait.until(ExpectedConditions.elementToBeClickable(locator));
+        return (WebElement) await("clickable", locator, null, ExpectedConditions.elementToBeClickable(locator));
+    }
+
+    // Wait until a custom condition returns a non-null, non-false value
+    public <T> T waitUntil(Function<? super WebDriver, T> condition) {
+        long start = System.nanoTime();
+        try {
+            return poll(condition, "custom condition", deadline(start));
+        } finally {
+            record(start, "custom condition");
+        }
     }
 
     // Wait until title contains text
     public boolean waitForTitleContains(String titlePart) {
-        return wait.until(ExpectedConditions.titleContains(titlePart));
+        return (Boolean) await("title", null, titlePart, ExpectedConditions.titleContains(titlePart));
+    }
+
+    /**
+     * @return How long the most recent wait on this helper blocked, in milliseconds.
+     */
+    public long getLastWaitMillis() {
+        return lastWaitMillis;
+    }
+
+    /**
+     * @return Number of waits performed by all helpers in this JVM.
+     */
+    public static long getTotalWaits() {
+        return totalWaits.get();
+    }
+
+    /**
+     * @return Time all helpers in this JVM spent blocked in waits, in milliseconds.
+     */
+    public static long getTotalBlockedMillis() {
+        return totalBlockedMillis.get();
+    }
+
+    private Object await(String condition, By locator, String title, Function<? super WebDriver, ?> pollingCondition) {
+        String description = condition + " " + (locator != null ? locator : "'" + title + "'");
+        long start = System.nanoTime();
+        long deadline = deadline(start);
+        try {
+            if (eventMode && (locator == null || locator instanceof By.Remotable)) {
+                Object result = awaitEvent(condition, locator, title, deadline, description);
+                if (result != null) {
+                    return result;
+                }
+            }
+            return poll(pollingCondition, description, deadline);
+        } finally {
+            record(start, description);
+        }
+    }
+
+    // Returns the script's result, or null when event mode turned out to be unavailable and polling should take over.
+    private Object awaitEvent(String condition, By locator, String title, long deadline, String description) {
+        String using = null;
+        String value = title;
+        if (locator != null) {
+            By.Remotable.Parameters params = ((By.Remotable) locator).getRemoteParameters();
+            using = params.using();
+            value = String.valueOf(params.value());
+        }
+        while (true) {
+            long remaining = (deadline - System.nanoTime()) / 1_000_000;
+            if (remaining <= 0) {
+                throw new TimeoutException("Expected condition failed: waiting for " + description
+                        + " (tried for " + timeout.getSeconds() + " second(s))");
+            }
+            try {
+                Object result = ((JavascriptExecutor) driver).executeAsyncScript(WAIT_JS,
+                        condition, using, value, Math.min(remaining, SCRIPT_SLICE_MILLIS));
+                scriptFailures = 0;
+                if (result != null) {
+                    return result;
+                }
+            } catch (ScriptTimeoutException | StaleElementReferenceException e) {
+                // Slice outlived the driver's script timeout or the element went stale; try again.
+            } catch (JavascriptException e) {
+                // Usually the page navigated away mid-wait. Polling copes with that without guessing from the
+                // driver's message; only repeated failures turn event mode off.
+                if (++scriptFailures >= MAX_SCRIPT_FAILURES) {
+                    logger.debug("Event wait failed {} times in a row, polling from now on: {}", scriptFailures, e.getMessage());
+                    eventMode = false;
+                }
+                return null;
+            } catch (UnsupportedCommandException e) {
+                eventMode = false;
+                return null;
+            }
+        }
+    }
+
+    private <T> T poll(Function<? super WebDriver, T> condition, String description, long deadline) {
+        long sleep = FIRST_POLL_MILLIS;
+        while (true) {
+            try {
+                T result = condition.apply(driver);
+                if (result != null && !Boolean.FALSE.equals(result)) {
+                    return result;
+                }
+            } catch (NotFoundException | StaleElementReferenceException e) {
+                // Not there yet; keep polling.
+            }
+            long remaining = (deadline - System.nanoTime()) / 1_000_000;
+            if (remaining <= 0) {
+                throw new TimeoutException("Expected condition failed: waiting for " + description
+                        + " (tried for " + timeout.getSeconds() + " second(s) with exponential backoff)");
+            }
+            try {
+                Thread.sleep(Math.min(sleep, remaining));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new TimeoutException("Interrupted while waiting for " + description, e);
+            }
+            sleep = Math.min(sleep * 2, MAX_POLL_MILLIS);
+        }
+    }
+
+    private long deadline(long start) {
+        return start + timeout.toNanos();
+    }
+
+    private void record(long start, String description) {
+        lastWaitMillis = (System.nanoTime() - start) / 1_000_000;
+        totalWaits.incrementAndGet();
+        totalBlockedMillis.addAndGet(lastWaitMillis);
+        logger.debug("Waited {} ms for {}", lastWaitMillis, description);
     }
 }
@@ -0,0 +1,65 @@
+package tests;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import utils.Config;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+
+/**
+ * Checks the layering and typed accessors of {@link Config} on isolated instances, leaving the shared
+ * snapshot and the JVM's system properties alone. Runs without a browser.
+ */
+public class ConfigTest {
+
+    @Test
+    public void laterLayersOverrideEarlierOnes() throws Exception {
+        Path dir = Files.createTempDirectory("config-test");
+        Path base = Files.writeString(dir.resolve("suite.properties"),
+                "env=qa\nbrowser=chrome\nfromFile=base\nbaseUrl=http://file\nfromProperty=base\n", StandardCharsets.UTF_8);
+        Files.writeString(dir.resolve("config-qa.properties"), "browser=firefox\n", StandardCharsets.UTF_8);
+
+        Config config = Config.load(base,
+                Map.of("SUITE_BASE_URL", "http://env", "SUITE_FROM_PROPERTY", "env"),
+                Map.of("fromProperty", "property"));
+
+        Assert.assertEquals(config.getString("fromFile"), "base");
+        Assert.assertEquals(config.getString("browser"), "firefox", "config-<env>.properties overrides the base file");
+        Assert.assertEquals(config.getString("baseUrl"), "http://env", "SUITE_ variables override the files");
+        Assert.assertEquals(config.getString("fromProperty"), "property", "-D overrides the environment");
+    }
+
+    @Test
+    public void typedAccessors() throws Exception {
+        Path file = Files.createTempFile("config-test", ".properties");
+        Files.writeString(file, "millis=500ms\nseconds=10s\nbare=7\niso=PT2M\ncount=42\nflag=TRUE\nblank=\nbad=ten\n",
+                StandardCharsets.UTF_8);
+        Config config = Config.load(file, Map.of(), Map.of());
+
+        Assert.assertEquals(config.getDuration("millis", null), Duration.ofMillis(500));
+        Assert.assertEquals(config.getDuration("seconds", null), Duration.ofSeconds(10));
+        Assert.assertEquals(config.getDuration("bare", null), Duration.ofSeconds(7));
+        Assert.assertEquals(config.getDuration("iso", null), Duration.ofMinutes(2));
+        Assert.assertEquals(config.getInt("count", 0), 42);
+        Assert.assertTrue(config.getBoolean("flag", false));
+        Assert.assertEquals(config.getInt("blank", 3), 3, "a blank value falls back to the default");
+        Assert.assertEquals(config.getString("blank", "default"), "", "a blank string is returned as is");
+
+        IllegalArgumentException e = Assert.expectThrows(IllegalArgumentException.class, () -> config.getInt("bad", 0));
+        Assert.assertTrue(e.getMessage().contains("'bad'"), e.getMessage());
+    }
+
+    @Test
+    public void snapshotsNeverChange() throws Exception {
+        Path file = Files.writeString(Files.createTempFile("config-test", ".properties"), "key=file\n", StandardCharsets.UTF_8);
+        Config before = Config.load(file, Map.of(), Map.of());
+        Config after = before.with("key", "override");
+
+        Assert.assertEquals(before.getString("key"), "file");
+        Assert.assertEquals(after.getString("key"), "override");
+    }
+}
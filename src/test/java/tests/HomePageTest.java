@@ -14,24 +14,24 @@ public class HomePageTest extends BaseTest {
 
     @Test(priority = 1)
     public void loginTest() {
-        driver.get(config.getProperty("baseUrl"));
+        getDriver().get(config.getProperty("baseUrl"));
 
-        LoginPage loginPage = new LoginPage(driver);
+        LoginPage loginPage = new LoginPage(getDriver());
         loginPage.login(config.getProperty("validUsername"), config.getProperty("validPassword"));
 
-        HomePage homePage = new HomePage(driver);
+        HomePage homePage = new HomePage(getDriver());
         Assert.assertTrue(homePage.isMyAccountVisible(), "Login failed!");
     }
 
     @Test(priority = 2, dependsOnMethods = "loginTest")
     public void verifyHomePageTitle() {
-    	LoginPage loginPage = new LoginPage(driver);
-        loginPage.login("standard_user", "secret_sauce");
+        Assert.assertTrue(loginAs(config.getProperty("validUsername"), config.getProperty("validPassword")), "Login failed!");
 
-        WebDriverWait wait = new WebDriverWait(driver, Duration.ofSeconds(10));
+        WebDriverWait wait = new WebDriverWait(getDriver(), Duration.ofSeconds(10));
         wait.until(ExpectedConditions.titleIs("My Account"));
 
-        HomePage homePage = new HomePage(driver);
+        HomePage homePage = new HomePage(getDriver());
+        homePage.checkLoadBudget();
         String actualTitle = homePage.getPageTitle();
         String expectedTitle = "My Account";
 
@@ -40,7 +40,9 @@ public class HomePageTest extends BaseTest {
 
     @Test(priority = 3, dependsOnMethods = "loginTest")
     public void verifyLogoutButtonVisible() {
-        HomePage homePage = new HomePage(driver);
+        Assert.assertTrue(loginAs(config.getProperty("validUsername"), config.getProperty("validPassword")), "Login failed!");
+
+        HomePage homePage = new HomePage(getDriver());
         Assert.assertTrue(homePage.isLogoutVisible(), "Logout button should be visible!");
     }
 }
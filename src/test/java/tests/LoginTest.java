@@ -8,21 +8,23 @@ import pages.LoginPage;
 import pages.HomePage;
 import utils.ExcelUtil;
 
+import java.util.Iterator;
+
 public class LoginTest extends BaseTest {
 
-    @DataProvider(name = "loginData")
-    public Object[][] getData() {
-        return ExcelUtil.getSheetData("login");
+    @DataProvider(name = "loginData", parallel = true)
+    public Iterator<Object[]> getData() {
+        return ExcelUtil.getSheetRows("login");
     }
 
     @Test(dataProvider = "loginData", groups = "login")
     public void validLoginTest(String username, String password) {
-        driver.get(config.getProperty("baseUrl"));
+        getDriver().get(config.getProperty("baseUrl"));
 
-        LoginPage loginPage = new LoginPage(driver);
+        LoginPage loginPage = new LoginPage(getDriver());
         loginPage.login(username, password);
 
-        HomePage homePage = new HomePage(driver);
+        HomePage homePage = new HomePage(getDriver());
         Assert.assertTrue(homePage.isMyAccountVisible(), "Login failed!");
     }
     
@@ -10,15 +10,17 @@ import pages.SearchPage;
 import utils.ExcelUtil;
 import base.BaseTest;
 
+import java.util.Iterator;
+
 @Epic("E-Commerce")
 @Feature("Product Search")
 public class SearchTest extends BaseTest {
 
     private static final Logger logger = LogManager.getLogger(SearchTest.class);
 
-    @DataProvider(name = "productData")
-    public Object[][] getProductData() {
-        return ExcelUtil.getSheetData("Products");
+    @DataProvider(name = "productData", parallel = true)
+    public Iterator<Object[]> getProductData() {
+        return ExcelUtil.getSheetRows("Products");
     }
 
     @Story("User searches for products")
@@ -27,9 +29,9 @@ public class SearchTest extends BaseTest {
     @Test(dataProvider = "productData", description = "Validate product search functionality for multiple inputs")
     public void testSearchProduct(String productName, String expectedResult) {
         logger.info("Navigating to base URL: {}", config.getProperty("baseUrl"));
-        driver.get(config.getProperty("baseUrl"));
+        getDriver().get(config.getProperty("baseUrl"));
 
-        SearchPage searchPage = new SearchPage(driver);
+        SearchPage searchPage = new SearchPage(getDriver());
         logger.info("Searching for product: {}", productName);
 
         searchPage.searchForProduct(productName);
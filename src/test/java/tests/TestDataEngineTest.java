@@ -0,0 +1,83 @@
+package tests;
+
+import org.apache.poi.ss.usermodel.*;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import utils.CompiledSheet;
+import utils.ExcelUtil;
+import utils.TestDataEngine;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Checks that the streaming data engine and the compiled sheets return exactly what POI's full workbook model sees.
+ * Runs without a browser.
+ */
+public class TestDataEngineTest {
+
+    @Test
+    public void streamedRowsMatchWorkbookModel() throws Exception {
+        Path workbook = TestDataEngine.resource("testdata.xlsx");
+        for (String sheet : TestDataEngine.sheetNames(workbook)) {
+            List<Object[]> streamed = new ArrayList<>();
+            ExcelUtil.getSheetRows(sheet).forEachRemaining(streamed::add);
+
+            List<Object[]> expected = readWithWorkbookModel(workbook, sheet);
+            Assert.assertEquals(streamed.size(), expected.size(), "Row count of sheet " + sheet);
+            for (int r = 0; r < expected.size(); r++) {
+                Assert.assertEquals(streamed.get(r), expected.get(r), "Row " + (r + 1) + " of sheet " + sheet);
+            }
+            Assert.assertEquals(ExcelUtil.getSheetData(sheet), expected.toArray(new Object[0][]));
+        }
+    }
+
+    @Test
+    public void compiledSheetsMatchWorkbook() {
+        Path workbook = TestDataEngine.resource("testdata.xlsx");
+        for (String sheet : TestDataEngine.sheetNames(workbook)) {
+            CompiledSheet compiled = CompiledSheet.forSheet(workbook, sheet);
+            Assert.assertEquals(compiled.toArray(), TestDataEngine.sheet(workbook, sheet), "Compiled sheet " + sheet);
+        }
+    }
+
+    @Test
+    public void unknownSheetYieldsNoRows() {
+        Assert.assertEquals(ExcelUtil.getSheetData("does-not-exist").length, 0);
+        Iterator<Object[]> rows = ExcelUtil.getSheetRows("does-not-exist");
+        Assert.assertFalse(rows.hasNext());
+    }
+
+    // The pre-streaming implementation of ExcelUtil.getSheetData, kept as the reference.
+    private static List<Object[]> readWithWorkbookModel(Path workbook, String sheetName) throws Exception {
+        List<Object[]> data = new ArrayList<>();
+        try (InputStream is = Files.newInputStream(workbook); Workbook wb = WorkbookFactory.create(is)) {
+            Sheet sh = wb.getSheet(sheetName);
+            int cols = sh.getRow(0).getLastCellNum();
+            FormulaEvaluator evaluator = wb.getCreationHelper().createFormulaEvaluator();
+            for (int r = 1; r <= sh.getLastRowNum(); r++) {
+                Row row = sh.getRow(r);
+                if (row == null) continue;
+
+                Object[] rowData = new Object[cols];
+                for (int c = 0; c < cols; c++) {
+                    Cell cell = row.getCell(c, Row.MissingCellPolicy.CREATE_NULL_AS_BLANK);
+                    CellValue cellValue = evaluator.evaluate(cell);
+                    rowData[c] = cellValue == null ? "" : switch (cellValue.getCellType()) {
+                        case STRING -> cellValue.getStringValue();
+                        case NUMERIC -> String.valueOf(cellValue.getNumberValue());
+                        case BOOLEAN -> String.valueOf(cellValue.getBooleanValue());
+                        case ERROR -> "ERROR";
+                        default -> "";
+                    };
+                }
+                data.add(rowData);
+            }
+        }
+        return data;
+    }
+}